@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.execution.workflow.SharedOutputContext;
+import com.dtolabs.rundeck.plugins.PluginLogger;
+import com.dtolabs.rundeck.plugins.step.PluginStepContext;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * A step context that discards log messages and outputs, so benchmarks
+ * measure the lookup rather than Rundeck.
+ *
+ * Built from proxies so it does not depend on the exact set of methods the
+ * Rundeck interfaces declare; every method returns null.
+ */
+final class BenchmarkContext {
+
+	private BenchmarkContext() {
+		throw new IllegalStateException("Utility class");
+	}
+
+	static PluginStepContext create() {
+		PluginLogger logger = discarding(PluginLogger.class, null, null);
+		SharedOutputContext output = discarding(SharedOutputContext.class, null, null);
+		return discarding(PluginStepContext.class, logger, output);
+	}
+
+	private static <T> T discarding(Class<T> type, PluginLogger logger, SharedOutputContext output) {
+		Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (self, method, args) -> {
+			switch (method.getName()) {
+			case "getLogger":
+				return logger;
+			case "getOutputContext":
+				return output;
+			case "hashCode":
+				return System.identityHashCode(self);
+			case "equals":
+				return self == args[0];
+			case "toString":
+				return type.getSimpleName();
+			default:
+				return null;
+			}
+		});
+		return type.cast(proxy);
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates the input files for the lookup benchmarks.
+ *
+ * Files are built from a fixed seed, so every run and every machine reads the
+ * same bytes. They are written once to the directory named by the system
+ * property filelookup.benchmark.dir (default: rundeck-file-lookup-jmh in the
+ * system temporary directory) and reused afterwards, since writing a 1 GB file
+ * takes longer than benchmarking it.
+ */
+final class BenchmarkFiles {
+
+	static final String DIRECTORY_PROPERTY = "filelookup.benchmark.dir";
+
+	/**
+	 * Bump when the generators change, so stale files are not reused.
+	 */
+	private static final int VERSION = 1;
+
+	private static final long SEED = 20191223L;
+
+	private BenchmarkFiles() {
+		throw new IllegalStateException("Utility class");
+	}
+
+	/**
+	 * @param size Such as 1KB, 64MB or 1GB.
+	 */
+	static long parseSize(String size) {
+		String value = size.trim().toUpperCase(Locale.ROOT);
+		long unit = 1;
+		if (value.endsWith("KB")) {
+			unit = 1024L;
+		} else if (value.endsWith("MB")) {
+			unit = 1024L * 1024;
+		} else if (value.endsWith("GB")) {
+			unit = 1024L * 1024 * 1024;
+		}
+		return Long.parseLong(value.replaceAll("[A-Z]+$", "")) * unit;
+	}
+
+	/**
+	 * An application log with DB_HOST and DB_PORT lines either right after the
+	 * first line or at the very end.
+	 */
+	static Path logFile(long size, boolean early) throws IOException {
+		return generate("log-" + (early ? "early" : "late") + "-" + size + ".log", writer -> {
+			Random random = new Random(SEED);
+			long written = 0;
+			long line = 0;
+			while (written < size) {
+				if (early && line == 1) {
+					written += write(writer, matchingLines());
+				}
+				written += write(writer, "2019-12-23 12:" + (line / 60 % 60) + ":" + (line % 60) + " INFO [worker-"
+						+ random.nextInt(32) + "] request handled in " + random.nextInt(1000)
+						+ "ms status=200 path=/api/v2/items/" + line + "\n");
+				line++;
+			}
+			if (!early) {
+				write(writer, matchingLines());
+			}
+		});
+	}
+
+	private static String matchingLines() {
+		return "DB_HOST=db1.example.com\nDB_PORT=5432\n";
+	}
+
+	/**
+	 * A JSON document of about the given size whose last value is "target".
+	 *
+	 * @param shape records: an array of small flat objects, like a list of
+	 *              services; deep: an array of objects nested 64 levels deep;
+	 *              wide: one object with a great many keys.
+	 */
+	static Path jsonFile(String shape, long size) throws IOException {
+		return generate("json-" + shape + "-" + size + ".json", writer -> {
+			Random random = new Random(SEED);
+			long written = 0;
+			switch (shape) {
+			case "records":
+				written += write(writer, "[");
+				for (int i = 0; written < size; i++) {
+					written += write(writer, (i == 0 ? "" : ",") + "{\"id\":\"1s" + i + "\",\"type\":\"service\","
+							+ "\"name\":\"frontend-" + random.nextInt(1000) + "\",\"state\":\"active\","
+							+ "\"scale\":" + random.nextInt(10) + "}");
+				}
+				write(writer, ",{\"target\":\"found\"}]");
+				break;
+			case "deep":
+				written += write(writer, "[");
+				for (int i = 0; written < size; i++) {
+					StringBuilder chain = new StringBuilder(i == 0 ? "" : ",");
+					for (int depth = 0; depth < 64; depth++) {
+						chain.append("{\"level\":").append(depth).append(",\"id\":").append(random.nextInt())
+								.append(",\"child\":");
+					}
+					chain.append("null");
+					for (int depth = 0; depth < 64; depth++) {
+						chain.append('}');
+					}
+					written += write(writer, chain.toString());
+				}
+				write(writer, ",{\"child\":{\"child\":{\"target\":\"found\"}}}]");
+				break;
+			case "wide":
+				written += write(writer, "{");
+				for (int i = 0; written < size; i++) {
+					written += write(writer, "\"key" + i + "\":\"value-" + random.nextInt(1000000) + "\",");
+				}
+				write(writer, "\"target\":\"found\"}");
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown document shape '" + shape + "'");
+			}
+		});
+	}
+
+	private interface Generator {
+		void write(Writer writer) throws IOException;
+	}
+
+	private static Path generate(String name, Generator generator) throws IOException {
+		Path directory = Paths.get(System.getProperty(DIRECTORY_PROPERTY,
+				Paths.get(System.getProperty("java.io.tmpdir"), "rundeck-file-lookup-jmh").toString()));
+		Path file = directory.resolve("v" + VERSION + "-" + name);
+		if (Files.isRegularFile(file)) {
+			return file;
+		}
+		Files.createDirectories(directory);
+		Path temporary = Files.createTempFile(directory, name, ".tmp");
+		try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.US_ASCII)) {
+			generator.write(writer);
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return file;
+	}
+
+	private static int write(Writer writer, String text) throws IOException {
+		writer.write(text);
+		return text.length();
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Cost per non-matching line of the reader loop: a String and a Matcher per
+ * line, as the scan used to do, against CharLineReader with PatternScan's
+ * reused Matcher. Run with the gc profiler to compare bytes allocated per line,
+ * which should be close to zero for the second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LineScanBenchmark {
+
+	private static final int LINES = 10000;
+
+	private String text;
+
+	private Pattern pattern;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(1);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < LINES; i++) {
+			builder.append("2019-12-23 12:00:").append(i % 60).append(" INFO [worker-").append(random.nextInt(32))
+					.append("] request handled in ").append(random.nextInt(1000)).append("ms status=200\n");
+		}
+		text = builder.toString();
+		pattern = Pattern.compile("^DB_HOST=(.*)");
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public int stringPerLine() throws IOException {
+		int matches = 0;
+		try (BufferedReader reader = new BufferedReader(new StringReader(text))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (pattern.matcher(line).find()) {
+					matches++;
+				}
+			}
+		}
+		return matches;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public PatternScan reusedBuffer() throws IOException {
+		PatternScan scan = new PatternScan(pattern, "data", null);
+		try (CharLineReader reader = new CharLineReader(new StringReader(text))) {
+			CharSequence line;
+			while ((line = reader.readLine()) != null) {
+				scan.visit(line);
+			}
+		}
+		return scan;
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Lines per second through PatternScan with and without the literal prefilter.
+ *
+ * Only one line in a thousand holds a value, alternating between a DB_HOST
+ * line and a version line, so each pattern matches one line in two thousand,
+ * which is typical of a two-capture scan over an application log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LiteralPrefilterBenchmark {
+
+	private static final int LINES = 10000;
+
+	@Param({ "^DB_(HOST|PORT)=(.*)", "\\s+version=(\\S+)" })
+	public String regex;
+
+	private String[] lines;
+
+	private Pattern pattern;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(1);
+		lines = new String[LINES];
+		for (int i = 0; i < LINES; i++) {
+			if (i % 1000 == 999) {
+				lines[i] = (i / 1000) % 2 == 0 ? "DB_HOST=db" + i + ".example.com" : "  version=1.2." + i;
+			} else {
+				lines[i] = "2019-12-23 12:00:" + (i % 60) + " INFO [worker-" + random.nextInt(32)
+						+ "] request handled in " + random.nextInt(1000) + "ms status=200 path=/api/v2/items/" + i;
+			}
+		}
+		pattern = Pattern.compile(regex);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public PatternScan regexOnly() {
+		PatternScan scan = new PatternScan(pattern, "data", null);
+		for (String line : lines) {
+			scan.visit(line);
+		}
+		return scan;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public PatternScan withPrefilter() {
+		PatternScan scan = new PatternScan(pattern, "data");
+		for (String line : lines) {
+			scan.visit(line);
+		}
+		return scan;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-invocation cost of a JSON lookup with a fresh ObjectMapper, as every step
+ * run used to build, against the shared mapper from JsonSupport.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ObjectMapperBenchmark {
+
+	private static final String DOCUMENT = "{\"id\": \"1s56\", \"type\": \"service\", "
+			+ "\"launchConfig\": {\"imageUuid\": \"docker:nginx\", \"environment\": {\"SITE\": \"example\"}}, "
+			+ "\"name\": \"frontend\", \"state\": \"active\"}";
+
+	@Benchmark
+	public String newMapperPerLookup() throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		try (JsonParser parser = mapper.getFactory().createParser(DOCUMENT)) {
+			return JsonFieldFinder.findFirst(parser, "state");
+		}
+	}
+
+	@Benchmark
+	public String sharedMapper() throws IOException {
+		try (JsonParser parser = JsonSupport.factory().createParser(DOCUMENT)) {
+			return JsonFieldFinder.findFirst(parser, "state");
+		}
+	}
+
+	@Benchmark
+	public JsonNode newMapperReadTree() throws IOException {
+		return new ObjectMapper().readTree(DOCUMENT);
+	}
+
+	@Benchmark
+	public JsonNode sharedTreeReader() throws IOException {
+		return JsonSupport.treeReader().readTree(DOCUMENT);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole JSON lookup steps per second through FileLookupUtils.scanJsonFile.
+ *
+ * The field looked up is the last value in each document, so every lookup
+ * reads the whole file. scanJsonFile runs with the document cache off, so
+ * each lookup parses the file again; scanJsonFileCached keeps parsed trees as
+ * the steps do by default, and streams documents too large for the cache as
+ * well. Allocation rates come from the gc profiler enabled in build.gradle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ScanJsonBenchmark {
+
+	@Param({ "1KB", "1MB", "64MB", "1GB" })
+	public String size;
+
+	@Param({ "records", "deep", "wide" })
+	public String shape;
+
+	private String path;
+
+	private FileLookupUtils uncached;
+
+	private FileLookupUtils cached;
+
+	@Setup
+	public void setUp() throws IOException {
+		path = BenchmarkFiles.jsonFile(shape, BenchmarkFiles.parseSize(size)).toString();
+		uncached = new FileLookupUtils(BenchmarkContext.create());
+		uncached.documentCache = new JsonDocumentCache(0);
+		cached = new FileLookupUtils(BenchmarkContext.create());
+		cached.documentCache = new JsonDocumentCache(JsonDocumentCache.DEFAULT_MAX_BYTES);
+	}
+
+	@Benchmark
+	public void scanJsonFile() throws IOException {
+		uncached.scanJsonFile(path, "target", "data", "value", false);
+	}
+
+	@Benchmark
+	public void scanJsonFileCached() throws IOException {
+		cached.scanJsonFile(path, "target", "data", "value", false);
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole scan steps per second through FileLookupUtils.scanPropertiesFile.
+ *
+ * Patterns with no capture group and with one stop at the first match, so
+ * early and late matches show the cost of the read itself; a two-capture
+ * pattern always reads to the end. Files of 64 MB and more go through the
+ * memory-mapped engine. Allocation rates come from the gc profiler enabled in
+ * build.gradle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ScanPropertiesBenchmark {
+
+	@Param({ "1KB", "1MB", "64MB", "1GB" })
+	public String size;
+
+	@Param({ "0", "1", "2" })
+	public int groups;
+
+	@Param({ "early", "late" })
+	public String match;
+
+	private String path;
+
+	private String regex;
+
+	private FileLookupUtils utils;
+
+	@Setup
+	public void setUp() throws IOException {
+		path = BenchmarkFiles.logFile(BenchmarkFiles.parseSize(size), "early".equals(match)).toString();
+		switch (groups) {
+		case 0:
+			regex = "^DB_HOST=\\S+";
+			break;
+		case 1:
+			regex = "^DB_HOST=(\\S+)";
+			break;
+		default:
+			regex = "^DB_(HOST|PORT)=(\\S+)";
+			break;
+		}
+		utils = new FileLookupUtils(BenchmarkContext.create());
+	}
+
+	@Benchmark
+	public void scanPropertiesFile() throws IOException {
+		utils.scanPropertiesFile(path, "data", "value", regex, false);
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A CharSequence view of a range of bytes, one char per byte.
+ *
+ * This lets regular expressions run directly over a mapped file without
+ * decoding every line. The view is only the text of the line when every byte
+ * is ASCII, so scanners hand it to patterns through LineDecoder, which decodes
+ * any other line with the reader's charset first.
+ */
+final class ByteCharSequence implements CharSequence {
+
+	private ByteBuffer buffer;
+
+	private int start;
+
+	private int length;
+
+	ByteCharSequence() {
+	}
+
+	ByteCharSequence(ByteBuffer buffer, int start, int end) {
+		reset(buffer, start, end);
+	}
+
+	/**
+	 * Points this view at another range so one object can serve every line.
+	 */
+	ByteCharSequence reset(ByteBuffer buffer, int start, int end) {
+		this.buffer = buffer;
+		this.start = start;
+		this.length = end - start;
+		return this;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+		}
+		return (char) (buffer.get(start + index) & 0xff);
+	}
+
+	@Override
+	public CharSequence subSequence(int from, int to) {
+		if (from < 0 || to > length || from > to) {
+			throw new IndexOutOfBoundsException("range " + from + ".." + to + ", length " + length);
+		}
+		return new ByteCharSequence(buffer, start + from, start + to);
+	}
+
+	/**
+	 * @return The chars of this view, one per byte.
+	 */
+	@Override
+	public String toString() {
+		return toString(StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * @return The range decoded with the given charset.
+	 */
+	String toString(Charset charset) {
+		byte[] bytes = new byte[length];
+		ByteBuffer view = buffer.duplicate();
+		view.position(start);
+		view.get(bytes);
+		return new String(bytes, charset);
+	}
+
+	/**
+	 * @return True if every byte in the range is ASCII.
+	 */
+	boolean isAscii() {
+		for (int i = start; i < start + length; i++) {
+			if (buffer.get(i) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return True if every char in the text is ASCII.
+	 */
+	static boolean isAscii(CharSequence text) {
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) > 0x7f) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.execution.ExecutionListener;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static com.dtolabs.rundeck.core.Constants.INFO_LEVEL;
+
+/**
+ * Execution listener for a node command whose output is read by the plugin.
+ *
+ * Node executors log each line a command writes to standard output as a
+ * normal-level message. Those messages go to the visitor instead of the job
+ * log; once the visitor has seen enough, later ones are dropped. Every other
+ * message and event, such as the command's errors, goes on to the step's own
+ * listener.
+ *
+ * The listener is a proxy, as the set of methods ExecutionListener declares
+ * differs between Rundeck releases; only log is intercepted.
+ */
+final class CapturingExecutionListener implements InvocationHandler {
+
+	private final ExecutionListener listener;
+
+	private final LineVisitor output;
+
+	private boolean done;
+
+	private CapturingExecutionListener(ExecutionListener listener, LineVisitor output) {
+		this.listener = listener;
+		this.output = output;
+	}
+
+	/**
+	 * Wraps the step's listener so normal-level messages go to the visitor.
+	 */
+	static ExecutionListener wrap(ExecutionListener listener, LineVisitor output) {
+		return (ExecutionListener) Proxy.newProxyInstance(ExecutionListener.class.getClassLoader(),
+				new Class<?>[] { ExecutionListener.class }, new CapturingExecutionListener(listener, output));
+	}
+
+	@Override
+	public Object invoke(Object self, Method method, Object[] args) throws Throwable {
+		if ("log".equals(method.getName()) && args.length >= 2 && Integer.valueOf(INFO_LEVEL).equals(args[0])) {
+			capture(String.valueOf(args[1]));
+			return null;
+		}
+		try {
+			return method.invoke(listener, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Hands a line of output to the visitor until it is done.
+	 */
+	private synchronized void capture(String line) {
+		if (!done) {
+			done = output.visit(line);
+		}
+	}
+}
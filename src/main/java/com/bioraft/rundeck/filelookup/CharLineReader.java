@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Reads lines from a Reader into one reusable char buffer.
+ *
+ * Unlike BufferedReader.readLine(), no String is built per line: each line is
+ * returned as a CharBuffer view of the buffer, which stays valid only until the
+ * next call. Lines end at \n, \r or \r\n, as with readLine(). The buffer grows
+ * to hold the longest line seen and is never shrunk.
+ */
+final class CharLineReader implements Closeable {
+
+	static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private final Reader reader;
+
+	private char[] chars;
+
+	private CharBuffer view;
+
+	private int start;
+
+	private int end;
+
+	private boolean eof;
+
+	/**
+	 * Set when a line ended with \r at the end of the buffer, so a \n at the
+	 * start of the next read belongs to the same line break.
+	 */
+	private boolean skipLineFeed;
+
+	CharLineReader(Reader reader) {
+		this(reader, DEFAULT_BUFFER_SIZE);
+	}
+
+	CharLineReader(Reader reader, int bufferSize) {
+		this.reader = reader;
+		this.chars = new char[Math.max(bufferSize, 16)];
+		this.view = CharBuffer.wrap(chars);
+	}
+
+	/**
+	 * @return The next line without its terminator, or null at the end of input.
+	 */
+	CharSequence readLine() throws IOException {
+		if (skipLineFeed) {
+			if (start == end && !eof) {
+				fill();
+			}
+			if (start < end && chars[start] == '\n') {
+				start++;
+			}
+			skipLineFeed = false;
+		}
+
+		int searched = 0;
+		while (true) {
+			for (int i = start + searched; i < end; i++) {
+				char c = chars[i];
+				if (c == '\n' || c == '\r') {
+					CharSequence line = line(start, i);
+					start = i + 1;
+					if (c == '\r') {
+						if (start < end) {
+							if (chars[start] == '\n') {
+								start++;
+							}
+						} else {
+							skipLineFeed = true;
+						}
+					}
+					return line;
+				}
+			}
+			searched = end - start;
+			if (eof) {
+				if (start == end) {
+					return null;
+				}
+				CharSequence line = line(start, end);
+				start = end;
+				return line;
+			}
+			fill();
+		}
+	}
+
+	private CharSequence line(int from, int to) {
+		view.clear();
+		view.position(from);
+		view.limit(to);
+		return view;
+	}
+
+	/**
+	 * Moves unread chars to the front, grows the buffer if it is full, and
+	 * reads more input behind them.
+	 */
+	private void fill() throws IOException {
+		if (start > 0) {
+			System.arraycopy(chars, start, chars, 0, end - start);
+			end -= start;
+			start = 0;
+		}
+		if (end == chars.length) {
+			chars = Arrays.copyOf(chars, chars.length * 2);
+			view = CharBuffer.wrap(chars);
+		}
+		int read = reader.read(chars, end, chars.length - end);
+		if (read < 0) {
+			eof = true;
+		} else {
+			end += read;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
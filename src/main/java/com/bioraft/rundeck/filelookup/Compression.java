@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens files that may be gzip or zstd compressed.
+ *
+ * The format is recognised by the magic bytes at the start of the file rather
+ * than by its name, so rotated logs such as app.log.1 are handled whatever
+ * they are called. Data is decompressed as it is read, so closing the stream
+ * after an early match ends decompression there as well.
+ */
+final class Compression {
+
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	enum Format {
+		NONE, GZIP, ZSTD
+	}
+
+	private Compression() {
+		throw new IllegalStateException("Utility class");
+	}
+
+	/**
+	 * @return The compression the file starts with; NONE for plain files.
+	 * @throws java.io.FileNotFoundException When the file cannot be opened.
+	 */
+	static Format detect(File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] magic = new byte[4];
+			return detect(magic, readFully(in, magic));
+		}
+	}
+
+	static Format detect(byte[] magic, int length) {
+		if (length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+			return Format.GZIP;
+		}
+		if (length >= 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5 && (magic[2] & 0xff) == 0x2f
+				&& (magic[3] & 0xff) == 0xfd) {
+			return Format.ZSTD;
+		}
+		return Format.NONE;
+	}
+
+	/**
+	 * @return A buffered stream of the file's content, decompressed if needed.
+	 * @throws java.io.FileNotFoundException When the file cannot be opened.
+	 */
+	static InputStream open(File file) throws IOException {
+		return open(file, detect(file));
+	}
+
+	/**
+	 * @param format The compression detected for the file.
+	 * @return A buffered stream of the file's content, decompressed if needed.
+	 * @throws java.io.FileNotFoundException When the file cannot be opened.
+	 */
+	static InputStream open(File file, Format format) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+		try {
+			switch (format) {
+			case GZIP:
+				return new GZIPInputStream(in, BUFFER_SIZE);
+			case ZSTD:
+				return new BufferedInputStream(new ZstdInputStream(in), BUFFER_SIZE);
+			default:
+				return in;
+			}
+		} catch (IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	private static int readFully(InputStream in, byte[] buffer) throws IOException {
+		int read = 0;
+		int n;
+		while (read < buffer.length && (n = in.read(buffer, read, buffer.length - read)) > 0) {
+			read += n;
+		}
+		return read;
+	}
+}
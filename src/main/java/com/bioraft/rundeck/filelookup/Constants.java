@@ -10,20 +10,92 @@ public class Constants {
     static final String OPT_GROUP = "Group";
     static final String OPT_NAME = "Name";
     static final String OPT_PATTERN = "Pattern";
+    static final String OPT_PATTERNS = "More Patterns";
     static final String OPT_FIELD_NAME = "Field Name";
+    static final String OPT_FIELDS = "Fields";
+    static final String OPT_FIELD_PATH = "Field Path";
+    static final String OPT_SEARCH_ORDER = "Search Order";
     static final String OPT_GLOBAL = "Make global?";
+    static final String OPT_PARALLELISM = "Parallelism";
+    static final String OPT_FROM_END = "Scan from end?";
+    static final String OPT_INCREMENTAL = "Incremental?";
+    static final String OPT_SCAN_ON_NODE = "Scan on node?";
+    static final String OPT_ENGINE = "Engine";
+    static final String OPT_MAX_BYTES = "Max Bytes";
+    static final String OPT_MAX_LINES = "Max Lines";
+    static final String OPT_TIMEOUT = "Timeout";
+    static final String OPT_PARTIAL_RESULTS = "Keep partial results?";
+    static final String OPT_METRICS_LEVEL = "Metrics Log Level";
+    static final String OPT_METRICS_OUTPUT = "Metrics Output?";
+
+    static final String DEPTH_FIRST = "depth-first";
+    static final String BREADTH_FIRST = "breadth-first";
+
+    static final String ENGINE_AUTO = "auto";
+    static final String ENGINE_TREE = "tree";
+    static final String ENGINE_STREAM = "stream";
+    static final String ENGINE_READER = "reader";
+    static final String ENGINE_MAPPED = "mapped";
+    static final String ENGINE_PARALLEL = "parallel";
+
+    static final String METRICS_LEVEL_DEBUG = "debug";
+    static final String METRICS_LEVEL_VERBOSE = "verbose";
+    static final String METRICS_LEVEL_INFO = "info";
+    static final String METRICS_LEVEL_OFF = "off";
 
     static final String OPT_PATH_DESCRIPTION =
-            "Path to the file to search";
+            "Path to the file to search, or a directory or glob (e.g., /var/log/app/*.log) to search "
+            + "several files in sorted order";
     static final String OPT_GROUP_DESCRIPTION =
             "Variable group (i.e., ${group.x}}";
     static final String OPT_NAME_DESCRIPTION =
             "Variable name (i.e., ${group.name}) [ignored when Pattern has 2 capture fields]";
     static final String OPT_PATTERN_DESCRIPTION =
             "Regular expression to find, with one or two capture fields";
+    static final String OPT_PATTERNS_DESCRIPTION =
+            "More expressions to find in the same pass, one per line, as name=regex or group.name=regex";
     static final String OPT_FIELD_NAME_DESCRIPTION =
             "Field name to lookup in JSON";
+    static final String OPT_FIELD_PATH_DESCRIPTION =
+            "Path to the value from the document root, as a JSON Pointer (/a/b/0) or JsonPath ($.a.b[0]); "
+            + "used instead of Field Name, and cannot be combined with Fields";
+    static final String OPT_SEARCH_ORDER_DESCRIPTION =
+            "Return the first match in the file (depth-first) or the least deeply nested one (breadth-first)";
+    static final String OPT_YAML_KEY_DESCRIPTION =
+            "Key to lookup in YAML";
+    static final String OPT_YAML_KEYS_DESCRIPTION =
+            "More keys to lookup in the same pass, separated by commas or new lines, as key or name=key";
+    static final String OPT_FIELDS_DESCRIPTION =
+            "More fields to lookup in the same pass, separated by commas or new lines, as field or name=field";
     static final String OPT_GLOBAL_DESCRIPTION =
             "\"Elevate this variable to global scope (default: false)";
+    static final String OPT_FROM_END_DESCRIPTION =
+            "Read the file backwards from the end, so the last match wins (default: false)";
+    static final String OPT_INCREMENTAL_DESCRIPTION =
+            "Only scan lines added since the last run, keeping values found before (default: false)";
+    static final String OPT_SCAN_ENGINE_DESCRIPTION =
+            "How files are read: auto picks per file, reader reads lines, mapped uses a memory mapping and "
+                    + "parallel splits the mapping across threads (default: auto)";
+    static final String OPT_JSON_ENGINE_DESCRIPTION =
+            "How files are read: auto picks per file, tree parses and caches the document and stream searches "
+                    + "it while reading (default: auto)";
+    static final String OPT_SCAN_ON_NODE_DESCRIPTION =
+            "Read the file on the target node instead of the Rundeck server; only lines that may match are "
+                    + "sent back (default: false)";
+    static final String OPT_PARALLELISM_DESCRIPTION =
+            "Number of threads used to scan files of 64 MB or more (default: 1)";
+    static final String OPT_MAX_BYTES_DESCRIPTION =
+            "Stop the lookup after reading this many bytes, over all files; 0 for no limit (default: 0)";
+    static final String OPT_MAX_LINES_DESCRIPTION =
+            "Stop the lookup after reading this many lines, over all files; 0 for no limit (default: 0)";
+    static final String OPT_TIMEOUT_DESCRIPTION =
+            "Stop the lookup after this many seconds; 0 for no limit (default: 0)";
+    static final String OPT_PARTIAL_RESULTS_DESCRIPTION =
+            "When a limit stops the lookup, keep the values found so far instead of failing the step "
+                    + "(default: false)";
+    static final String OPT_METRICS_LEVEL_DESCRIPTION =
+            "Log level for bytes read, lines, matches, timings and cache hits of the lookup (default: debug)";
+    static final String OPT_METRICS_OUTPUT_DESCRIPTION =
+            "Also write the metrics to ${group.__metrics.*} (default: false)";
 
 }
@@ -23,5 +23,6 @@ import com.dtolabs.rundeck.core.execution.workflow.steps.FailureReason;
  */
 public enum FileLookupFailureReason implements FailureReason {
 	FILE_NOT_FOUND,
-	FILE_NOT_READABLE
+	FILE_NOT_READABLE,
+	BUDGET_EXCEEDED
 }
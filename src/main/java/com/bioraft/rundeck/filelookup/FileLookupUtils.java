@@ -16,32 +16,138 @@
 package com.bioraft.rundeck.filelookup;
 
 import com.dtolabs.rundeck.core.Constants;
+import com.dtolabs.rundeck.core.common.INodeEntry;
 import com.dtolabs.rundeck.core.dispatcher.ContextView;
+import com.dtolabs.rundeck.core.execution.ExecutionContext;
 import com.dtolabs.rundeck.plugins.step.PluginStepContext;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import org.yaml.snakeyaml.error.YAMLException;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
+import static com.bioraft.rundeck.filelookup.Constants.METRICS_LEVEL_INFO;
+import static com.bioraft.rundeck.filelookup.Constants.METRICS_LEVEL_OFF;
+import static com.bioraft.rundeck.filelookup.Constants.METRICS_LEVEL_VERBOSE;
 import static com.dtolabs.rundeck.core.Constants.DEBUG_LEVEL;
 import static com.dtolabs.rundeck.core.Constants.ERR_LEVEL;
+import static com.dtolabs.rundeck.core.Constants.INFO_LEVEL;
+import static com.dtolabs.rundeck.core.Constants.VERBOSE_LEVEL;
+import static com.dtolabs.rundeck.core.Constants.WARN_LEVEL;
 
 public class FileLookupUtils {
 
-	private final PluginStepContext pluginStepContext;
+	static final long MAPPED_SCAN_THRESHOLD = 64L * 1024 * 1024;
+
+	/**
+	 * Metrics are written as ${group.__metrics.name} when requested.
+	 */
+	static final String METRICS_PREFIX = "__metrics.";
+
+	/**
+	 * Log level meaning metrics are not logged.
+	 */
+	static final int METRICS_OFF = -1;
 
-	private Map<String, String> map;
+	private final PluginStepContext pluginStepContext;
 
+	/**
+	 * Overrides the shared mapper from JsonSupport; only set by tests.
+	 */
 	ObjectMapper objectMapper;
 
+	JsonDocumentCache documentCache = JsonDocumentCache.shared();
+
+	PatternCache patternCache = PatternCache.shared();
+
+	/**
+	 * Shares the reads of a file between concurrent lookups of it, such as the
+	 * runs of one node step on many nodes.
+	 */
+	SingleFlight inFlight = SingleFlight.shared();
+
+	/**
+	 * Files at least this large are scanned through a memory mapping instead of
+	 * a reader, provided the pattern is plain ASCII.
+	 */
+	long mappedScanThreshold = MAPPED_SCAN_THRESHOLD;
+
+	/**
+	 * Number of files of a glob or directory that are read at the same time.
+	 */
+	int fileThreads = MultiFileScanner.DEFAULT_THREADS;
+
+	private int parallelism = 1;
+
+	/**
+	 * The engine forced by the step, or AUTO to choose one per file.
+	 */
+	private LookupEngine engine = LookupEngine.AUTO;
+
+	private boolean breadthFirst;
+
+	private boolean fromEnd;
+
+	/**
+	 * Where incremental scans keep their checkpoints; null scans whole files.
+	 */
+	private Path checkpointDirectory;
+
+	/**
+	 * Work done by the latest lookup; replaced when the next one starts.
+	 */
+	LookupMetrics metrics = new LookupMetrics();
+
+	private long maxBytes;
+
+	private long maxLines;
+
+	private long timeoutMillis;
+
+	/**
+	 * Whether a lookup that runs out of budget keeps the values found so far
+	 * instead of failing.
+	 */
+	private boolean keepPartialResults;
+
+	/**
+	 * Limits of the latest lookup; replaced when the next one starts.
+	 */
+	private LookupBudget budget = new LookupBudget(0, 0, 0);
+
+	private int metricsLevel = METRICS_OFF;
+
+	private boolean metricsOutput;
+
 	public FileLookupUtils(PluginStepContext context) {
 		this.pluginStepContext = context;
 	}
@@ -51,105 +157,824 @@ public class FileLookupUtils {
 		this.objectMapper = objectMapper;
 	}
 
+	/**
+	 * Creates the lookup for one step run, tuned by the run's options.
+	 */
+	FileLookupUtils(PluginStepContext context, LookupRequest request) {
+		this.pluginStepContext = context;
+		setBreadthFirst(request.isBreadthFirst());
+		setFromEnd(request.isFromEnd());
+		setIncremental(request.isIncremental());
+		setParallelism(request.getParallelism());
+		setEngine(LookupEngine.of(request.getEngine()));
+		setMetricsLevel(metricsLevel(request.getMetricsLevel()));
+		setMetricsOutput(request.isMetricsOutput());
+		setLimits(request.getMaxBytes(), request.getMaxLines(), TimeUnit.SECONDS.toMillis(request.getTimeout()));
+		setKeepPartialResults(request.isKeepPartialResults());
+	}
+
+	/**
+	 * @param parallelism Number of threads that may scan one large file.
+	 */
+	void setParallelism(int parallelism) {
+		this.parallelism = Math.max(parallelism, 1);
+	}
+
+	/**
+	 * @param engine The engine to read files with, or AUTO to choose per file.
+	 */
+	void setEngine(LookupEngine engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * @param breadthFirst Whether field lookups return the shallowest match
+	 *                     rather than the first one in document order.
+	 */
+	void setBreadthFirst(boolean breadthFirst) {
+		this.breadthFirst = breadthFirst;
+	}
+
+	/**
+	 * @param fromEnd Whether scans read the file backwards, so that the last
+	 *                match in the file wins.
+	 */
+	void setFromEnd(boolean fromEnd) {
+		this.fromEnd = fromEnd;
+	}
+
+	/**
+	 * @param incremental Whether scans resume from the checkpoint left by the
+	 *                    previous scan of the same file with the same patterns.
+	 */
+	void setIncremental(boolean incremental) {
+		this.checkpointDirectory = incremental ? ScanCheckpoint.defaultDirectory() : null;
+	}
+
+	void setCheckpointDirectory(Path checkpointDirectory) {
+		this.checkpointDirectory = checkpointDirectory;
+	}
+
+	/**
+	 * Limits every lookup; 0 means no limit. See LookupBudget for how bytes and
+	 * lines are counted.
+	 */
+	void setLimits(long maxBytes, long maxLines, long timeoutMillis) {
+		this.maxBytes = maxBytes;
+		this.maxLines = maxLines;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * @param keepPartialResults Whether a lookup that runs out of budget writes
+	 *                           out the values found so far instead of failing.
+	 */
+	void setKeepPartialResults(boolean keepPartialResults) {
+		this.keepPartialResults = keepPartialResults;
+	}
+
+	/**
+	 * @param metricsLevel Log level for the metrics of each lookup, or
+	 *                     METRICS_OFF to not log them.
+	 */
+	void setMetricsLevel(int metricsLevel) {
+		this.metricsLevel = metricsLevel;
+	}
+
+	/**
+	 * @param metricsOutput Whether each lookup also writes its metrics to the
+	 *                      step output, as ${group.__metrics.name}.
+	 */
+	void setMetricsOutput(boolean metricsOutput) {
+		this.metricsOutput = metricsOutput;
+	}
+
+	/**
+	 * Reads the metrics log level option: debug, verbose, info or off.
+	 * Anything else falls back to debug.
+	 */
+	static int metricsLevel(String option) {
+		switch (option == null ? "" : option.trim().toLowerCase(Locale.ROOT)) {
+		case METRICS_LEVEL_OFF:
+			return METRICS_OFF;
+		case METRICS_LEVEL_INFO:
+			return INFO_LEVEL;
+		case METRICS_LEVEL_VERBOSE:
+			return VERBOSE_LEVEL;
+		default:
+			return DEBUG_LEVEL;
+		}
+	}
+
+	/**
+	 * Reads an integer step option, falling back to the default when it is blank.
+	 *
+	 * @throws IllegalArgumentException When the option is not a whole number.
+	 */
+	static int intOption(Map<String, Object> configuration, String key, String title, int defaultValue) {
+		Object value = configuration.get(key);
+		if (value == null || value.toString().trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.toString().trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(notWholeNumber(title, value), e);
+		}
+	}
+
+	/**
+	 * Reads a long step option, falling back to the default when it is blank.
+	 *
+	 * @throws IllegalArgumentException When the option is not a whole number.
+	 */
+	static long longOption(Map<String, Object> configuration, String key, String title, long defaultValue) {
+		Object value = configuration.get(key);
+		if (value == null || value.toString().trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.toString().trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(notWholeNumber(title, value), e);
+		}
+	}
+
+	private static String notWholeNumber(String title, Object value) {
+		return "Option '" + title + "' must be a whole number, not '" + value.toString().trim() + "'";
+	}
+
 	void scanJsonFile(String path, String fieldName, String group, String name, boolean elevateToGlobal)
 			throws IOException {
+		scanJsonFile(path, Collections.singletonMap(name, fieldName), group, elevateToGlobal);
+	}
+
+	/**
+	 * Looks up several fields in one read of the file, or of each file when the
+	 * path is a glob or directory; the first file that has a field provides it.
+	 *
+	 * @param fields Field names to look up, keyed by the variable name each value
+	 *               is written to. Several variables may name the same field.
+	 */
+	void scanJsonFile(String path, Map<String, String> fields, String group, boolean elevateToGlobal)
+			throws IOException {
+
+		Set<String> fieldNames = new LinkedHashSet<>(fields.values());
+		JsonSearch<Map<String, String>> search = breadthFirst ? JsonBreadthFirstFinder.searchFor(fieldNames)
+				: JsonFieldFinder.searchFor(fieldNames);
+		Map<String, String> values = new HashMap<>();
+		List<Object> query = Arrays.asList("fields", breadthFirst, fieldNames);
+		searchFiles(path, file -> searchJsonFile(file.toString(), search, false, query), found -> {
+			putAbsent(values, found);
+			return values.keySet().containsAll(fieldNames) || budget.isExhausted();
+		});
+		for (Map.Entry<String, String> field : fields.entrySet()) {
+			String value = values.get(field.getValue());
+			if (value != null) {
+				addFieldToOutput(group, field.getKey(), value, elevateToGlobal);
+			}
+		}
+		reportMetrics(path, group);
+	}
+
+	/**
+	 * Looks up the value at an anchored path and writes it to the named variable.
+	 */
+	void queryJsonFile(String path, JsonPathQuery query, String group, String name, boolean elevateToGlobal)
+			throws IOException {
+		String[] value = new String[1];
+		List<Object> key = Arrays.asList("query", query.toString());
+		searchFiles(path, file -> searchJsonFile(file.toString(), query, true, key), found -> {
+			value[0] = found;
+			return found != null || budget.isExhausted();
+		});
+		if (value[0] != null) {
+			addFieldToOutput(group, name, value[0], elevateToGlobal);
+		}
+		reportMetrics(path, group);
+	}
+
+	/**
+	 * Runs the search over every file the path names, in sorted path order,
+	 * until the accumulator is satisfied or the budget runs out.
+	 */
+	private <T> void searchFiles(String path, MultiFileScanner.FileSearch<T> search,
+			MultiFileScanner.Accumulator<T> accumulator) throws IOException {
+		startLookup();
+		List<Path> files;
+		try {
+			files = MultiFileScanner.expand(path);
+		} catch (IOException e) {
+			pluginStepContext.getLogger().log(ERR_LEVEL, "Could not list files for '" + path + "'");
+			throw(e);
+		}
+		try {
+			new MultiFileScanner(fileThreads).scan(files, search, accumulator);
+		} catch (LookupBudgetException e) {
+			checkBudget(path);
+			throw(e);
+		}
+		checkBudget(path);
+	}
+
+	/**
+	 * Starts the metrics and the budget of a new lookup.
+	 */
+	private void startLookup() {
+		metrics = new LookupMetrics();
+		budget = new LookupBudget(maxBytes, maxLines, timeoutMillis);
+	}
+
+	/**
+	 * Ends a lookup that ran out of budget, by failing it or by logging how far
+	 * it got and keeping the values found so far.
+	 */
+	private void checkBudget(String path) throws LookupBudgetException {
+		if (!budget.isExhausted()) {
+			return;
+		}
+		String message = "Lookup of '" + path + "' " + budget.progress();
+		if (!keepPartialResults) {
+			pluginStepContext.getLogger().log(ERR_LEVEL, message);
+			throw new LookupBudgetException(message);
+		}
+		pluginStepContext.getLogger().log(WARN_LEVEL, message + "; keeping the values found so far");
+	}
+
+	/**
+	 * Counts what is read from the stream against the budget, when it has limits.
+	 *
+	 * @param countLines Whether line breaks read count as lines.
+	 */
+	private InputStream limit(InputStream stream, boolean countLines) {
+		return budget.isLimited() ? budget.limit(stream, countLines) : stream;
+	}
+
+	/**
+	 * Adds the values found in a later file for names not found before. A file
+	 * cut short by the budget found nothing.
+	 */
+	private static void putAbsent(Map<String, String> values, Map<String, String> found) {
+		if (found == null) {
+			return;
+		}
+		for (Map.Entry<String, String> entry : found.entrySet()) {
+			if (entry.getValue() != null) {
+				values.putIfAbsent(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Runs the search against the cached tree when the file is unchanged, and
+	 * otherwise reads the file. A forced streaming engine always reads the file.
+	 *
+	 * @param pathQuery Whether the search is an anchored path query.
+	 * @param query     Identifies the search, so that concurrent identical
+	 *                  searches of the file share one read.
+	 */
+	private <T> T searchJsonFile(String path, JsonSearch<T> search, boolean pathQuery, List<Object> query)
+			throws IOException {
+		JsonDocumentCache.Key key = JsonDocumentCache.keyFor(new File(path));
+		JsonNode cached = engine == LookupEngine.STREAM ? null : documentCache.get(key);
+		metrics.addFile();
+		if (cached != null) {
+			metrics.addCacheHit();
+			long start = System.nanoTime();
+			T found = search.search(cached);
+			metrics.addSearchNanos(System.nanoTime() - start);
+			return found;
+		}
+		metrics.addCacheMiss();
+		return coalesce(key, query, () -> parseJsonFile(path, search, pathQuery, key));
+	}
 
-		FileReader reader;
+	/**
+	 * Reads the file and searches it, either as a tree, cached when it fits, or
+	 * while streaming; see LookupEngine.forJson for the choice.
+	 *
+	 * Documents too large for the cache or the free heap are searched while
+	 * streaming so they never have to be held in memory. So are compressed
+	 * documents, whose size on disk says little about the size of their tree,
+	 * and large documents looked up by path.
+	 *
+	 * A document cut short by the budget is not searched at all, so when partial
+	 * results are kept it simply finds nothing.
+	 */
+	private <T> T parseJsonFile(String path, JsonSearch<T> search, boolean pathQuery, JsonDocumentCache.Key key)
+			throws IOException {
+		InputStream stream;
+		Compression.Format format;
 
 		try {
-			reader = new FileReader(path);
+			File file = new File(path);
+			format = Compression.detect(file);
+			stream = limit(metrics.count(Compression.open(file, format)), true);
 		} catch (FileNotFoundException e) {
 			String message = "Could not find file '" + path + "'";
 			pluginStepContext.getLogger().log(ERR_LEVEL, message);
 			throw(e);
 		}
 
-		if (objectMapper == null) {
-			objectMapper = new ObjectMapper();
-		}
+		boolean compressed = format != Compression.Format.NONE;
+		LookupEngine chosen = LookupEngine.forJson(engine, compressed, documentCache.accepts(key), pathQuery,
+				new File(path).length(), LookupEngine.freeHeap());
+		logEngine(path, chosen);
 
-		JsonNode rootNode;
-		try {
-			rootNode = objectMapper.readTree(reader);
+		JsonFactory factory = objectMapper == null ? JsonSupport.factory() : objectMapper.getFactory();
+		try (JsonParser parser = factory.createParser(stream)) {
+			long start = System.nanoTime();
+			if (chosen == LookupEngine.STREAM) {
+				T found = search.search(parser);
+				metrics.addSearchNanos(System.nanoTime() - start);
+				return found;
+			}
+			JsonNode rootNode = objectMapper == null ? JsonSupport.treeReader().readTree(parser) : objectMapper.readTree(parser);
+			long parsed = System.nanoTime();
+			metrics.addParseNanos(parsed - start);
+			if (rootNode == null) {
+				rootNode = MissingNode.getInstance();
+			} else if (!compressed && documentCache.accepts(key)) {
+				documentCache.put(key, rootNode);
+			}
+			T found = search.search(rootNode);
+			metrics.addSearchNanos(System.nanoTime() - parsed);
+			return found;
+		} catch (LookupBudgetException e) {
+			if (keepPartialResults) {
+				return null;
+			}
+			throw(e);
 		} catch (IOException e) {
 			String message = "Could parse JSON file '" + path + "'";
 			pluginStepContext.getLogger().log(ERR_LEVEL, message);
-			reader.close();
 			throw(e);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Looks up several keys in one read of a YAML file, or of each file when the
+	 * path is a glob or directory; the first file that has a key provides it.
+	 *
+	 * @param fields Keys to look up, keyed by the variable name each value is
+	 *               written to. Several variables may name the same key.
+	 */
+	void scanYamlFile(String path, Map<String, String> fields, String group, boolean elevateToGlobal)
+			throws IOException {
+		Set<String> keys = new LinkedHashSet<>(fields.values());
+		Map<String, String> values = new HashMap<>();
+		List<Object> query = Arrays.asList("yaml", keys);
+		searchFiles(path, file -> readYamlFile(file.toString(), keys, query), found -> {
+			putAbsent(values, found);
+			return values.keySet().containsAll(keys) || budget.isExhausted();
+		});
+
+		for (Map.Entry<String, String> field : fields.entrySet()) {
+			String value = values.get(field.getValue());
+			if (value != null) {
+				addFieldToOutput(group, field.getKey(), value, elevateToGlobal);
+			}
+		}
+		reportMetrics(path, group);
+	}
+
+	private Map<String, String> readYamlFile(String path, Set<String> keys, List<Object> query) throws IOException {
+		metrics.addFile();
+		long start = System.nanoTime();
+		try {
+			return coalesce(JsonDocumentCache.keyFor(new File(path)), query, () -> parseYamlFile(path, keys));
+		} finally {
+			metrics.addSearchNanos(System.nanoTime() - start);
+		}
+	}
+
+	private Map<String, String> parseYamlFile(String path, Set<String> keys) throws IOException {
+		try (Reader reader = new InputStreamReader(limit(metrics.count(Compression.open(new File(path))), true),
+				StandardCharsets.UTF_8)) {
+			return YamlFieldFinder.findAll(new BufferedReader(reader), keys);
+		} catch (LookupBudgetException e) {
+			if (keepPartialResults) {
+				return null;
+			}
+			throw(e);
+		} catch (FileNotFoundException e) {
+			String message = "Could not find file '" + path + "'";
+			pluginStepContext.getLogger().log(ERR_LEVEL, message);
+			throw(e);
+		} catch (YAMLException e) {
+			String message = "Could not parse YAML file '" + path + "'";
+			pluginStepContext.getLogger().log(ERR_LEVEL, message);
+			throw new IOException(message, e);
+		}
+	}
+
+	/**
+	 * Builds the variable-to-field map for a JSON or YAML lookup step.
+	 *
+	 * The single fieldName/name pair comes first, followed by each entry of the
+	 * fields list. Entries are separated by commas or new lines and take the form
+	 * "field" or "variable=field", with the variable first as in the patterns
+	 * of a scan; a bare field is stored under its own name.
+	 */
+	static Map<String, String> jsonFields(String fieldName, String name, String fields) {
+		Map<String, String> mapping = new LinkedHashMap<>();
+		if (fieldName != null && !fieldName.trim().isEmpty()) {
+			mapping.put(name, fieldName.trim());
 		}
-		String value = searchTree(rootNode, fieldName);
-		if (value != null) {
-			addFieldToOutput(group, name, value, elevateToGlobal);
+		if (fields == null) {
+			return mapping;
+		}
+		for (String entry : fields.split("[,\\r\\n]+")) {
+			String[] parts = entry.split("=", 2);
+			String field = parts[parts.length - 1].trim();
+			if (field.isEmpty()) {
+				continue;
+			}
+			String variable = parts.length > 1 && !parts[0].trim().isEmpty() ? parts[0].trim() : field;
+			mapping.put(variable, field);
 		}
-		reader.close();
+		return mapping;
 	}
 
 
 	void scanPropertiesFile(String path, String group, String name, String regex, boolean elevateToGlobal)
 			throws IOException {
+		scanPropertiesFile(path, Collections.singletonList(new ScanTarget(group, name, regex)), elevateToGlobal);
+	}
+
+	/**
+	 * Scans the file once for every target's pattern and writes out what each
+	 * one captured.
+	 *
+	 * When the path is a glob or directory, each file is scanned on its own and
+	 * the results are merged in sorted path order, or in reverse order for a
+	 * scan from the end, so that the same rules decide between files as between
+	 * lines of one file.
+	 */
+	void scanPropertiesFile(String path, List<ScanTarget> targets, boolean elevateToGlobal) throws IOException {
+		List<PatternScan> scans = new ArrayList<>(targets.size());
+		// The mapped engines split lines as bytes, which needs a charset that encodes ASCII as single bytes.
+		boolean asciiPatterns = LineDecoder.platform().isAsciiCompatible();
+		for (ScanTarget target : targets) {
+			scans.add(patternScan(patternCache.compile(target.getRegex()), target.getName()));
+			asciiPatterns &= ByteCharSequence.isAscii(target.getRegex());
+		}
+		startLookup();
+		MultiPatternScan scan = new MultiPatternScan(scans, budget.isLimited() ? budget : null);
 
-		Pattern pattern = Pattern.compile(regex);
+		boolean ascii = asciiPatterns;
+		List<Object> query = scanQuery(targets);
+		try {
+			List<Path> files = MultiFileScanner.expand(path);
+			if (fromEnd) {
+				files = new ArrayList<>(files);
+				Collections.reverse(files);
+			}
+			new MultiFileScanner(fileThreads).scan(files, file -> scanFile(file, targets, scan.copy(), ascii, query), found -> {
+				scan.merge(found);
+				return scan.isComplete() || budget.isExhausted();
+			});
+		} catch (LookupBudgetException e) {
+			checkBudget(path);
+			throw(e);
+		} catch (IOException e) {
+			String reason = e.getMessage() == null ? "" : ": " + e.getMessage();
+			pluginStepContext.getLogger().log(ERR_LEVEL, "Could not read file '" + path + "'" + reason);
+			throw(e);
+		}
+		checkBudget(path);
+		addScanOutputs(path, targets, scan, elevateToGlobal);
+	}
 
-		map = new HashMap<>();
+	/**
+	 * Scans a file on the node instead of the Rundeck server. Only the lines
+	 * that may match are sent back from the node; see NodeFileScanner.
+	 */
+	void scanNodeFile(NodeCommandRunner runner, INodeEntry node, String path, List<ScanTarget> targets,
+			boolean elevateToGlobal) throws IOException {
+		List<Pattern> patterns = new ArrayList<>(targets.size());
+		List<PatternScan> scans = new ArrayList<>(targets.size());
+		for (ScanTarget target : targets) {
+			Pattern pattern = patternCache.compile(target.getRegex());
+			patterns.add(pattern);
+			scans.add(patternScan(pattern, target.getName()));
+		}
+		startLookup();
+		MultiPatternScan scan = new MultiPatternScan(scans, budget.isLimited() ? budget : null);
+		metrics.addFile();
 
-		try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
-			// Scan lines for a match.
-			// Optimize by returning immediately when there is only one capture field.
-			do {
-				String line;
-				line = reader.readLine();
-				if (line == null || matchLine(pattern, line, group, name, elevateToGlobal)) {
-					return;
-				}
-			} while (true);
+		long start = System.nanoTime();
+		try {
+			metrics.addBytes(new NodeFileScanner(runner, node).scan(path, patterns, scan, fromEnd));
 		} catch (IOException e) {
-			pluginStepContext.getLogger().log(ERR_LEVEL, "Could not read file '" + path + "'");
+			String reason = e.getMessage() == null ? "" : ": " + e.getMessage();
+			pluginStepContext.getLogger().log(ERR_LEVEL,
+					"Could not read file '" + path + "' on node " + node.getNodename() + reason);
 			throw(e);
+		} finally {
+			metrics.addSearchNanos(System.nanoTime() - start);
+		}
+		checkBudget(path);
+		addScanOutputs(path, targets, scan, elevateToGlobal);
+	}
+
+	/**
+	 * @return A scan for the pattern that records its matched lines when they
+	 *         will be logged.
+	 */
+	private PatternScan patternScan(Pattern pattern, String name) {
+		PatternScan scan = new PatternScan(pattern, name);
+		if (debugEnabled()) {
+			scan.recordMatchedLines();
 		}
+		return scan;
 	}
 
-	private boolean matchLine(Pattern pattern, String line, String group, String name, boolean elevateToGlobal) {
-		Matcher match = pattern.matcher(line);
-		if (match.find()) {
-			pluginStepContext.getLogger().log(DEBUG_LEVEL, "Matched " + line);
-			if (match.groupCount() == 1) {
-				addFieldToOutput(group, name, match.group(1), elevateToGlobal);
-				return true;
-			} else if (match.groupCount() > 1) {
-				pluginStepContext.getLogger().log(DEBUG_LEVEL, "Found '" + match.group(1) + "' : '" + match.group(2) + "'");
-				// Take first value and do not overwrite, even though scanning proceeds
-				// through the rest of the file to find other matches to the pattern.
-				if (!map.containsKey(match.group(1))) {
-					addFieldToOutput(group, match.group(1), match.group(2), elevateToGlobal);
-					map.put(match.group(1), match.group(2));
+	/**
+	 * Writes out what each target captured, and the metrics of the scan.
+	 */
+	private void addScanOutputs(String path, List<ScanTarget> targets, MultiPatternScan scan, boolean elevateToGlobal) {
+		metrics.addLines(scan.lines());
+		metrics.addMatches(scan.matches());
+
+		boolean debug = debugEnabled();
+		for (int i = 0; i < targets.size(); i++) {
+			String group = targets.get(i).getGroup();
+			if (debug) {
+				for (String line : scan.scans().get(i).matchedLines()) {
+					pluginStepContext.getLogger().log(DEBUG_LEVEL, "Matched " + line);
 				}
-			} else {
-				addFieldToOutput(group, name, match.group(0), elevateToGlobal);
-				return true;
+			}
+			for (Map.Entry<String, String> entry : scan.scans().get(i).values().entrySet()) {
+				if (debug) {
+					pluginStepContext.getLogger().log(DEBUG_LEVEL, "Found '" + entry.getKey() + "' : '" + entry.getValue() + "'");
+				}
+				addFieldToOutput(group, entry.getKey(), entry.getValue(), elevateToGlobal);
 			}
 		}
-		return false;
+		reportMetrics(path, targets.get(0).getGroup());
 	}
 
 	/**
-	 * Performs the tree search in a recursive depth-first manner.
+	 * Identifies a scan by everything that decides its results, so that only
+	 * scans that would find the same values share a read. Whether matched lines
+	 * are recorded for debug logging is part of the results.
+	 */
+	private List<Object> scanQuery(List<ScanTarget> targets) {
+		List<Object> query = new ArrayList<>();
+		query.add("scan");
+		query.add(fromEnd);
+		query.add(checkpointDirectory);
+		query.add(debugEnabled());
+		for (ScanTarget target : targets) {
+			query.add(target.getName());
+			query.add(target.getRegex());
+		}
+		return query;
+	}
+
+	/**
+	 * Runs the work once for every concurrent lookup of the same version of a
+	 * file with the same query. A lookup that waits for another's result does
+	 * not read the file itself and is counted as coalesced. The result is
+	 * shared, so callers only read it. A lookup with a budget always does its
+	 * own work, as what it finds depends on its own limits.
+	 *
+	 * @param version The file version from JsonDocumentCache.keyFor; when null,
+	 *                the file is not shared and the work just runs.
+	 */
+	private <T> T coalesce(JsonDocumentCache.Key version, List<Object> query, SingleFlight.Work<T> work)
+			throws IOException {
+		if (version == null || budget.isLimited()) {
+			return work.run();
+		}
+		boolean[] ran = new boolean[1];
+		T result = inFlight.run(Arrays.asList(version, query), () -> {
+			ran[0] = true;
+			return work.run();
+		});
+		if (!ran[0]) {
+			metrics.addCoalesced();
+		}
+		return result;
+	}
+
+	/**
+	 * @return The scan holding the results for the one file, which are partial
+	 *         when the budget ran out and partial results are kept.
+	 */
+	private MultiPatternScan scanFile(Path path, List<ScanTarget> targets, MultiPatternScan scan, boolean asciiPattern,
+			List<Object> query) throws IOException {
+		metrics.addFile();
+		long start = System.nanoTime();
+		File file = path.toFile();
+		try {
+			return coalesce(JsonDocumentCache.keyFor(file), query, () -> {
+				Compression.Format format = Compression.detect(file);
+				try {
+					if (format != Compression.Format.NONE) {
+						logEngine(file.getPath(), LookupEngine.READER);
+						scanCompressed(file, format, scan);
+					} else if (checkpointDirectory == null) {
+						scanLines(file, scan, asciiPattern);
+					} else {
+						return scanIncrementally(path, targets, scan, asciiPattern);
+					}
+				} catch (LookupBudgetException e) {
+					if (!keepPartialResults) {
+						throw(e);
+					}
+				}
+				return scan;
+			});
+		} finally {
+			metrics.addSearchNanos(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Scans only the complete lines added since the last checkpoint and merges
+	 * them with the values found before it.
+	 *
+	 * Lines after the checkpoint are later in the file than everything already
+	 * found, so they are merged behind the old values in a forward scan and in
+	 * front of them in a scan from the end. A single-capture pattern matched
+	 * before the checkpoint needs no further reading in a forward scan. A last
+	 * line without a line break is left for the next run. When the checkpoint
+	 * does not describe the current file, the whole file is scanned again.
+	 * No checkpoint is stored when the budget cuts the scan short, so the next
+	 * run reads the same lines again. The new lines are read with the engine
+	 * LookupEngine.forScan picks for their size, as a full scan would.
 	 *
-	 * @param node The node tree to search.
-	 * @return The textual form of the first matched field, or null if not matched.
+	 * @return The scan holding the combined results.
 	 */
-	private String searchTree(JsonNode node, String fieldName) {
-		List<JsonNode> values = node.findValues(fieldName);
-		for (JsonNode value : values) {
-			if (value.isValueNode()) {
-				return value.asText();
+	private MultiPatternScan scanIncrementally(Path file, List<ScanTarget> targets, MultiPatternScan scan,
+			boolean asciiPattern) throws IOException {
+		Path stateFile = ScanCheckpoint.stateFile(checkpointDirectory, file, targets, fromEnd);
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		ScanCheckpoint checkpoint = ScanCheckpoint.load(stateFile);
+		MultiPatternScan previous = scan.copy();
+		long from = 0;
+		if (checkpoint != null && checkpoint.continues(attributes)) {
+			checkpoint.restore(previous);
+			from = checkpoint.offset();
+		}
+
+		MultiPatternScan result;
+		long to = from;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (!fromEnd && previous.isComplete()) {
+				result = previous;
 			} else {
-				String subTreeSearch = searchTree(value, fieldName);
-				if (subTreeSearch != null) {
-					return subTreeSearch;
+				to = Math.max(ReverseFileScanner.completeLinesEnd(channel), from);
+				LookupEngine chosen = LookupEngine.forScan(engine, to - from, asciiPattern, fromEnd,
+						scan.stopsEarly(), parallelism, mappedScanThreshold);
+				logEngine(file.toString(), chosen);
+				result = scan;
+				if (fromEnd) {
+					long start = budgetedStart(channel, from, to);
+					metrics.addBytes(to - start);
+					new ReverseFileScanner().scan(channel, start, to, result);
+					result.merge(previous);
+				} else {
+					long end = budgetedEnd(channel, from, to);
+					metrics.addBytes(end - from);
+					MultiPatternScan later = result;
+					result = previous;
+					scanRegion(channel, from, end, later, chosen);
+					result.merge(later);
 				}
 			}
 		}
-		return null;
+		if (!budget.isExhausted()) {
+			ScanCheckpoint.store(stateFile, attributes, to, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Feeds the lines between two line starts to the scan, with the given engine.
+	 */
+	private void scanRegion(FileChannel channel, long from, long to, MultiPatternScan scan, LookupEngine chosen)
+			throws IOException {
+		switch (chosen) {
+		case PARALLEL:
+			int threads = parallelism > 1 ? parallelism : Runtime.getRuntime().availableProcessors();
+			new ParallelFileScanner(threads).scan(channel, from, to, scan);
+			return;
+		case MAPPED:
+			new MappedFileScanner().scan(channel, from, to, scan, scan.filter());
+			return;
+		default:
+			break;
+		}
+		InputStream stream = new RegionInputStream(channel, from, to);
+		try (CharLineReader reader = new CharLineReader(new InputStreamReader(stream, LineDecoder.platform().charset()))) {
+			readLines(reader, scan);
+		}
+	}
+
+	/**
+	 * Reserves bytes for the region between two offsets, the lower one a line
+	 * start, and cuts it at the first line start past what the budget allows.
+	 *
+	 * @return The end of the part of the region to read from its start.
+	 */
+	private long budgetedEnd(FileChannel channel, long from, long to) throws IOException {
+		long granted = budget.reserveBytes(to - from);
+		return granted == to - from ? to : ParallelFileScanner.nextLineStart(channel, from + granted, to);
+	}
+
+	/**
+	 * Like budgetedEnd, for a region read backwards from its end.
+	 *
+	 * @return The start of the part of the region to read from its end.
+	 */
+	private long budgetedStart(FileChannel channel, long from, long to) throws IOException {
+		long granted = budget.reserveBytes(to - from);
+		return granted == to - from ? from : ParallelFileScanner.nextLineStart(channel, to - granted, to);
+	}
+
+	/**
+	 * Feeds the lines of a file to the scan, with the engine chosen by
+	 * LookupEngine.forScan.
+	 *
+	 * Large files are memory-mapped, and split across threads when more than one
+	 * is allowed and the whole file must be read. The mapped engines find lines
+	 * and literals as bytes and decode candidate lines with the platform charset,
+	 * like the reader; they are only used for ASCII patterns. A
+	 * scan from the end always reads blocks backwards from EOF, whatever the
+	 * size. A forced parallel scan with Parallelism left at 1 uses a thread per
+	 * processor. The mapped engines read no more of the file than the budget
+	 * allows.
+	 */
+	private void scanLines(File file, MultiPatternScan scan, boolean asciiPattern) throws IOException {
+		LookupEngine chosen = LookupEngine.forScan(engine, file.length(), asciiPattern, fromEnd, scan.stopsEarly(),
+				parallelism, mappedScanThreshold);
+		logEngine(file.getPath(), chosen);
+		switch (chosen) {
+		case REVERSE:
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				long size = channel.size();
+				long start = budgetedStart(channel, 0, size);
+				metrics.addBytes(size - start);
+				new ReverseFileScanner().scan(channel, start, size, scan);
+			}
+			return;
+		case PARALLEL:
+			int threads = parallelism > 1 ? parallelism : Runtime.getRuntime().availableProcessors();
+			long limit = budget.reserveBytes(file.length());
+			metrics.addBytes(new ParallelFileScanner(threads).scan(file.toPath(), limit, scan));
+			return;
+		case MAPPED:
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				long end = budgetedEnd(channel, 0, channel.size());
+				metrics.addBytes(end);
+				new MappedFileScanner().scan(channel, 0, end, scan, scan.filter());
+			}
+			return;
+		default:
+			break;
+		}
+
+		InputStream stream = limit(metrics.count(new FileInputStream(file)), false);
+		try (CharLineReader reader = new CharLineReader(new InputStreamReader(stream, LineDecoder.platform().charset()))) {
+			readLines(reader, scan);
+		}
+	}
+
+	/**
+	 * Feeds the lines of a compressed file to the scan as they are decompressed.
+	 *
+	 * Only a forward scan from the start is possible, so scans from the end and
+	 * incremental scans are refused rather than silently read the wrong way.
+	 */
+	private void scanCompressed(File file, Compression.Format format, LineVisitor scan) throws IOException {
+		if (fromEnd || checkpointDirectory != null) {
+			throw new IOException(format + " compressed files can only be scanned forward from the start");
+		}
+		InputStream stream = limit(metrics.count(Compression.open(file, format)), false);
+		try (CharLineReader reader = new CharLineReader(new InputStreamReader(stream, LineDecoder.platform().charset()))) {
+			readLines(reader, scan);
+		}
+	}
+
+	private static void readLines(CharLineReader reader, LineVisitor scan) throws IOException {
+		// Scan lines for a match.
+		// Optimize by returning immediately once every pattern with one capture field has matched.
+		// Lines are views of the reader's buffer, so nothing is allocated for lines that do not match.
+		do {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedIOException("Scan cancelled");
+			}
+			CharSequence line;
+			line = reader.readLine();
+			if (line == null || scan.visit(line)) {
+				return;
+			}
+		} while (true);
 	}
 
 	private void addFieldToOutput(String group, String name, String value, boolean elevate) {
@@ -157,7 +982,52 @@ public class FileLookupUtils {
 		if (elevate) {
 			String groupName = group + "." + name;
 			pluginStepContext.getOutputContext().addOutput(ContextView.global(), "export", groupName, value);
-			pluginStepContext.getLogger().log(Constants.DEBUG_LEVEL, "Elevating to global ${export." + groupName + "}.");
+			if (debugEnabled()) {
+				pluginStepContext.getLogger().log(Constants.DEBUG_LEVEL, "Elevating to global ${export." + groupName + "}.");
+			}
+		}
+	}
+
+	/**
+	 * Logs the metrics of the lookup just finished and, if requested, writes
+	 * them to the step output.
+	 *
+	 * Metrics are only logged when the execution is known to log at their
+	 * level, so nothing is formatted for a level that would be discarded.
+	 */
+	private void reportMetrics(String path, String group) {
+		ExecutionContext execution = pluginStepContext.getExecutionContext();
+		if (metricsLevel != METRICS_OFF && execution != null && execution.getLoglevel() >= metricsLevel) {
+			pluginStepContext.getLogger().log(metricsLevel, "Lookup metrics for '" + path + "': " + metrics);
+		}
+		if (metricsOutput) {
+			for (Map.Entry<String, String> entry : metrics.asMap().entrySet()) {
+				pluginStepContext.getOutputContext().addOutput(group, METRICS_PREFIX + entry.getKey(), entry.getValue());
+			}
 		}
 	}
+
+	/**
+	 * Logs at debug level which engine reads the file, noting when it is not
+	 * the one the step forced. Like the metrics, this is only logged when the
+	 * execution is known to log at debug level.
+	 */
+	private void logEngine(String path, LookupEngine chosen) {
+		ExecutionContext execution = pluginStepContext.getExecutionContext();
+		if (execution != null && execution.getLoglevel() >= DEBUG_LEVEL) {
+			String forced = engine == LookupEngine.AUTO || engine == chosen ? ""
+					: " (" + engine.option() + " cannot read this file)";
+			pluginStepContext.getLogger().log(DEBUG_LEVEL, "Reading '" + path + "' with the " + chosen.option()
+					+ " engine" + forced);
+		}
+	}
+
+	/**
+	 * Whether the execution logs at debug level, so that debug messages are only
+	 * built when they will be shown. Assumed true when the level is unknown.
+	 */
+	private boolean debugEnabled() {
+		ExecutionContext execution = pluginStepContext.getExecutionContext();
+		return execution == null || execution.getLoglevel() >= DEBUG_LEVEL;
+	}
 }
\ No newline at end of file
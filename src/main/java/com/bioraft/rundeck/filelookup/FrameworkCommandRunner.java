@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.common.INodeEntry;
+import com.dtolabs.rundeck.core.execution.ExecArgList;
+import com.dtolabs.rundeck.core.execution.ExecutionContext;
+import com.dtolabs.rundeck.core.execution.ExecutionContextImpl;
+import com.dtolabs.rundeck.core.execution.ExecutionService;
+import com.dtolabs.rundeck.core.execution.service.NodeExecutorResult;
+import com.dtolabs.rundeck.plugins.step.PluginStepContext;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs node commands through the node executor Rundeck uses for the node,
+ * such as SSH.
+ *
+ * The command runs with a capturing execution listener, which hands what it
+ * writes to standard output to the visitor. Once the visitor has seen enough,
+ * later lines are dropped; the command itself still runs to its end, as the
+ * node executor offers no way to stop it.
+ */
+class FrameworkCommandRunner implements NodeCommandRunner {
+
+	private final ExecutionContext execution;
+
+	private final ExecutionService service;
+
+	FrameworkCommandRunner(PluginStepContext context) {
+		this(context.getExecutionContext(), context.getFramework().getExecutionService());
+	}
+
+	FrameworkCommandRunner(ExecutionContext execution, ExecutionService service) {
+		this.execution = execution;
+		this.service = service;
+	}
+
+	@Override
+	public int run(INodeEntry node, List<String> command, LineVisitor output) throws IOException {
+		ExecutionContext capturing = ExecutionContextImpl.builder(execution)
+				.executionListener(CapturingExecutionListener.wrap(execution.getExecutionListener(), output)).build();
+		NodeExecutorResult result = service.executeCommand(capturing,
+				ExecArgList.fromStrings(true, command.toArray(new String[0])), node);
+		if (result == null) {
+			throw new IOException("No result from node " + node.getNodename());
+		}
+		return result.getResultCode();
+	}
+}
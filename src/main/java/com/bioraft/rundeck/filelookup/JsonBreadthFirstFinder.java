@@ -0,0 +1,175 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search for the shallowest value node stored under a field name.
+ *
+ * The depth of a value is the number of objects and arrays enclosing it, so
+ * the fields of the root object are at depth one. Among matches at the same
+ * depth the one earliest in the document wins, which is the order a
+ * breadth-first walk of the tree visits them in.
+ *
+ * A parsed tree is walked one level at a time, holding only the containers of
+ * the current and next level, and the walk ends at the first level that holds
+ * a match. A stream cannot be read level by level, so it is read once in
+ * document order, remembering the shallowest match so far: once a match at
+ * depth d is known, containers whose members would be at depth d or deeper are
+ * skipped unread, and the read ends as soon as every field has a match at
+ * depth one, since nothing can be shallower. Memory use is constant.
+ */
+class JsonBreadthFirstFinder {
+
+	private JsonBreadthFirstFinder() {
+		throw new IllegalStateException("Utility class");
+	}
+
+	/**
+	 * @return A search for the shallowest value of each of fieldNames.
+	 */
+	static JsonSearch<Map<String, String>> searchFor(final Collection<String> fieldNames) {
+		return new JsonSearch<Map<String, String>>() {
+			@Override
+			public Map<String, String> search(JsonParser parser) throws IOException {
+				return findAll(parser, fieldNames);
+			}
+
+			@Override
+			public Map<String, String> search(JsonNode root) {
+				return findAll(root, fieldNames);
+			}
+		};
+	}
+
+	/**
+	 * Reads the document once and returns the shallowest scalar stored under
+	 * each of fieldNames.
+	 *
+	 * @param parser     A parser positioned before the document to search.
+	 * @param fieldNames The field names to look for.
+	 * @return The shallowest value of each field that was found, keyed by field name.
+	 * @throws IOException When the document cannot be read or is malformed.
+	 */
+	static Map<String, String> findAll(JsonParser parser, Collection<String> fieldNames) throws IOException {
+		Set<String> wanted = new HashSet<>(fieldNames);
+		Map<String, String> found = new LinkedHashMap<>();
+		Map<String, Integer> foundDepth = new HashMap<>();
+		if (wanted.isEmpty()) {
+			return found;
+		}
+		// Members of a container at this depth or deeper cannot improve any match.
+		int prune = Integer.MAX_VALUE;
+		int depth = 0;
+		JsonToken token;
+		while ((token = parser.nextToken()) != null) {
+			if (token == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				token = parser.nextToken();
+				if (token.isScalarValue() && wanted.contains(name)) {
+					Integer best = foundDepth.get(name);
+					if (best == null || depth < best) {
+						found.put(name, JsonFieldFinder.scalarText(parser, token));
+						foundDepth.put(name, depth);
+						if (found.size() == wanted.size()) {
+							prune = maximum(foundDepth.values());
+							if (prune == 1) {
+								break;
+							}
+						}
+					}
+				}
+			}
+			if (token.isStructStart()) {
+				if (depth + 1 >= prune) {
+					parser.skipChildren();
+				} else {
+					depth++;
+				}
+			} else if (token.isStructEnd()) {
+				depth--;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Walks an in-memory tree level by level and returns the shallowest scalar
+	 * stored under each of fieldNames, stopping at the level where the last of
+	 * them is found.
+	 *
+	 * @param root       The tree to search.
+	 * @param fieldNames The field names to look for.
+	 * @return The shallowest value of each field that was found, keyed by field name.
+	 */
+	static Map<String, String> findAll(JsonNode root, Collection<String> fieldNames) {
+		Set<String> wanted = new HashSet<>(fieldNames);
+		Map<String, String> found = new LinkedHashMap<>();
+		List<JsonNode> level = new ArrayList<>();
+		if (root.isContainerNode()) {
+			level.add(root);
+		}
+		while (!level.isEmpty() && found.size() < wanted.size()) {
+			List<JsonNode> next = new ArrayList<>();
+			Map<String, String> foundHere = new LinkedHashMap<>();
+			for (JsonNode container : level) {
+				if (container.isObject()) {
+					Iterator<Map.Entry<String, JsonNode>> fields = container.fields();
+					while (fields.hasNext()) {
+						Map.Entry<String, JsonNode> field = fields.next();
+						JsonNode value = field.getValue();
+						if (value.isContainerNode()) {
+							next.add(value);
+						} else if (wanted.contains(field.getKey()) && !found.containsKey(field.getKey())) {
+							foundHere.putIfAbsent(field.getKey(), value.asText());
+						}
+					}
+				} else {
+					for (JsonNode element : container) {
+						if (element.isContainerNode()) {
+							next.add(element);
+						}
+					}
+				}
+			}
+			found.putAll(foundHere);
+			level = next;
+		}
+		return found;
+	}
+
+	private static int maximum(Collection<Integer> values) {
+		int maximum = 0;
+		for (int value : values) {
+			maximum = Math.max(maximum, value);
+		}
+		return maximum;
+	}
+}
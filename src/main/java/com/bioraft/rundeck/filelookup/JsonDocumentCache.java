@@ -0,0 +1,183 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * Plugin-wide cache of parsed JSON documents.
+ *
+ * Entries are keyed by canonical path, last-modified time and size, so any
+ * change to the file misses the cache and the stale tree is replaced. Eviction
+ * is least-recently-used, bounded by the approximate heap weight of the cached
+ * trees rather than by entry count.
+ *
+ * The cap is read from the system property named by MAX_BYTES_PROPERTY and
+ * defaults to DEFAULT_MAX_BYTES; a cap of zero disables caching. Cached trees
+ * are shared between executions and must never be modified.
+ */
+class JsonDocumentCache {
+
+	static final String MAX_BYTES_PROPERTY = "com.bioraft.rundeck.filelookup.jsonCacheMaxBytes";
+
+	static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	/**
+	 * Rough ratio of JsonNode heap use to source bytes. Every value becomes at
+	 * least one node object and strings are widened to UTF-16, so trees are
+	 * several times larger than the text they were parsed from.
+	 */
+	static final int BYTES_PER_SOURCE_BYTE = 5;
+
+	private static final JsonDocumentCache SHARED = new JsonDocumentCache(Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+
+	private final long maxBytes;
+
+	private long weight;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	JsonDocumentCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	static JsonDocumentCache shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Builds the cache key for a file, or returns null if it is not a regular file.
+	 */
+	static Key keyFor(File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		return new Key(file.getCanonicalPath(), attributes.lastModifiedTime(), attributes.size());
+	}
+
+	/**
+	 * @return True if a document of this size could be held without exceeding the cap.
+	 */
+	boolean accepts(Key key) {
+		return key != null && weigh(key) <= maxBytes;
+	}
+
+	synchronized JsonNode get(Key key) {
+		if (key == null) {
+			return null;
+		}
+		Entry entry = entries.get(key.path);
+		if (entry == null) {
+			return null;
+		}
+		if (!entry.key.equals(key)) {
+			remove(key.path);
+			return null;
+		}
+		return entry.tree;
+	}
+
+	synchronized void put(Key key, JsonNode tree) {
+		if (!accepts(key) || tree == null) {
+			return;
+		}
+		remove(key.path);
+		Entry entry = new Entry(key, tree, weigh(key));
+		entries.put(key.path, entry);
+		weight += entry.weight;
+
+		Iterator<Entry> eldest = entries.values().iterator();
+		while (weight > maxBytes && eldest.hasNext()) {
+			weight -= eldest.next().weight;
+			eldest.remove();
+		}
+	}
+
+	synchronized long weight() {
+		return weight;
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	private void remove(String path) {
+		Entry old = entries.remove(path);
+		if (old != null) {
+			weight -= old.weight;
+		}
+	}
+
+	private static long weigh(Key key) {
+		return Math.max(key.size, 1) * BYTES_PER_SOURCE_BYTE;
+	}
+
+	static final class Key {
+		private final String path;
+		private final FileTime lastModified;
+		private final long size;
+
+		Key(String path, FileTime lastModified, long size) {
+			this.path = path;
+			this.lastModified = lastModified;
+			this.size = size;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return size == other.size && path.equals(other.path) && lastModified.equals(other.lastModified);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(path, lastModified, size);
+		}
+	}
+
+	private static final class Entry {
+		private final Key key;
+		private final JsonNode tree;
+		private final long weight;
+
+		Entry(Key key, JsonNode tree, long weight) {
+			this.key = key;
+			this.tree = tree;
+			this.weight = weight;
+		}
+	}
+}
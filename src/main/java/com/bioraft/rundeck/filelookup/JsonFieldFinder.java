@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search for the first value node stored under a field name.
+ *
+ * Tokens are consumed in document order, so the first scalar seen under a
+ * matching field name is the same value a depth-first search of the parsed
+ * tree would return. Nothing is materialized: the parser is abandoned as soon
+ * as the match is read, so a match near the top of a large file costs only the
+ * bytes up to that point.
+ *
+ * Trees that are already in memory are searched in the same order by a
+ * single-pass walker, so both forms of a document give the same answer.
+ */
+class JsonFieldFinder {
+
+	private JsonFieldFinder() {
+		throw new IllegalStateException("Utility class");
+	}
+
+	/**
+	 * Reads tokens until a field named fieldName with a scalar value is found.
+	 *
+	 * Matching fields whose values are objects or arrays are descended into like
+	 * any other container, because the first scalar match may be nested inside
+	 * them. An unanchored field search cannot rule out any subtree, so nothing
+	 * is skipped here; the savings come from stopping at the first match.
+	 *
+	 * @param parser    A parser positioned before the document to search.
+	 * @param fieldName The field name to look for.
+	 * @return The textual form of the first matched value, or null if not matched.
+	 * @throws IOException When the document cannot be read or is malformed.
+	 */
+	static String findFirst(JsonParser parser, String fieldName) throws IOException {
+		return findAll(parser, Collections.singleton(fieldName)).get(fieldName);
+	}
+
+	/**
+	 * Resolves several field names in one pass over the tokens.
+	 *
+	 * Each field gets the same value findFirst would return for it alone. The
+	 * parser is abandoned once every field has a value, so the cost is that of
+	 * the deepest-read match rather than one read per field.
+	 *
+	 * @param parser     A parser positioned before the document to search.
+	 * @param fieldNames The field names to look for.
+	 * @return The first value of each field that was found, keyed by field name.
+	 * @throws IOException When the document cannot be read or is malformed.
+	 */
+	static Map<String, String> findAll(JsonParser parser, Collection<String> fieldNames) throws IOException {
+		Set<String> wanted = new HashSet<>(fieldNames);
+		Map<String, String> found = new LinkedHashMap<>();
+		JsonToken token;
+		while (found.size() < wanted.size() && (token = parser.nextToken()) != null) {
+			if (token == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				if (wanted.contains(name) && !found.containsKey(name)) {
+					token = parser.nextToken();
+					if (token != null && token.isScalarValue()) {
+						found.put(name, scalarText(parser, token));
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Walks an in-memory tree in document order and returns the first scalar
+	 * stored under fieldName.
+	 *
+	 * @param root      The tree to search.
+	 * @param fieldName The field name to look for.
+	 * @return The textual form of the first matched value, or null if not matched.
+	 */
+	static String findFirst(JsonNode root, String fieldName) {
+		return findAll(root, Collections.singleton(fieldName)).get(fieldName);
+	}
+
+	/**
+	 * Walks an in-memory tree once and returns the first scalar stored under
+	 * each of fieldNames, stopping when all of them are found.
+	 *
+	 * Each node is visited at most once. Open containers are kept on an explicit
+	 * stack of iterators, so deeply nested documents cannot overflow the call
+	 * stack.
+	 *
+	 * @param root       The tree to search.
+	 * @param fieldNames The field names to look for.
+	 * @return The first value of each field that was found, keyed by field name.
+	 */
+	static Map<String, String> findAll(JsonNode root, Collection<String> fieldNames) {
+		Set<String> wanted = new HashSet<>(fieldNames);
+		Map<String, String> found = new LinkedHashMap<>();
+		Deque<Iterator<Map.Entry<String, JsonNode>>> stack = new ArrayDeque<>();
+		stack.push(children(root));
+		while (found.size() < wanted.size() && !stack.isEmpty()) {
+			Iterator<Map.Entry<String, JsonNode>> iterator = stack.peek();
+			if (!iterator.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			Map.Entry<String, JsonNode> entry = iterator.next();
+			JsonNode value = entry.getValue();
+			if (value.isContainerNode()) {
+				stack.push(children(value));
+			} else if (wanted.contains(entry.getKey()) && !found.containsKey(entry.getKey())) {
+				found.put(entry.getKey(), value.asText());
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return A search for the first value of each of fieldNames.
+	 */
+	static JsonSearch<Map<String, String>> searchFor(final Collection<String> fieldNames) {
+		return new JsonSearch<Map<String, String>>() {
+			@Override
+			public Map<String, String> search(JsonParser parser) throws IOException {
+				return findAll(parser, fieldNames);
+			}
+
+			@Override
+			public Map<String, String> search(JsonNode root) {
+				return findAll(root, fieldNames);
+			}
+		};
+	}
+
+	/**
+	 * Iterates object fields as they are, and array elements as unnamed entries.
+	 */
+	private static Iterator<Map.Entry<String, JsonNode>> children(JsonNode node) {
+		if (node.isObject()) {
+			return node.fields();
+		}
+		final Iterator<JsonNode> elements = node.elements();
+		return new Iterator<Map.Entry<String, JsonNode>>() {
+			@Override
+			public boolean hasNext() {
+				return elements.hasNext();
+			}
+
+			@Override
+			public Map.Entry<String, JsonNode> next() {
+				return new AbstractMap.SimpleImmutableEntry<>(null, elements.next());
+			}
+		};
+	}
+
+	/**
+	 * Renders the current scalar token the same way JsonNode.asText() renders
+	 * the node ObjectMapper would have built for it.
+	 */
+	static String scalarText(JsonParser parser, JsonToken token) throws IOException {
+		switch (token) {
+		case VALUE_NUMBER_INT:
+			return parser.getNumberValue().toString();
+		case VALUE_NUMBER_FLOAT:
+			return Double.toString(parser.getDoubleValue());
+		case VALUE_TRUE:
+			return "true";
+		case VALUE_FALSE:
+			return "false";
+		case VALUE_NULL:
+			return "null";
+		default:
+			return parser.getText();
+		}
+	}
+}
@@ -17,10 +17,13 @@
 package com.bioraft.rundeck.filelookup;
 
 import com.dtolabs.rundeck.core.execution.workflow.steps.StepException;
+import com.dtolabs.rundeck.core.execution.workflow.steps.StepFailureReason;
 import com.dtolabs.rundeck.core.plugins.Plugin;
 import com.dtolabs.rundeck.plugins.ServiceNameConstants;
 import com.dtolabs.rundeck.plugins.descriptions.PluginDescription;
 import com.dtolabs.rundeck.plugins.descriptions.PluginProperty;
+import com.dtolabs.rundeck.plugins.descriptions.RenderingOption;
+import com.dtolabs.rundeck.plugins.descriptions.SelectValues;
 import com.dtolabs.rundeck.plugins.step.PluginStepContext;
 import com.dtolabs.rundeck.plugins.step.StepPlugin;
 
@@ -28,18 +31,19 @@ import java.io.IOException;
 import java.util.Map;
 
 import static com.bioraft.rundeck.filelookup.Constants.*;
-import static org.apache.commons.lang.StringUtils.defaultString;
+import static com.dtolabs.rundeck.core.plugins.configuration.StringRenderingConstants.DISPLAY_TYPE_KEY;
 
 /**
  * Workflow Step Plug-in to find value of first matching field name in JSON
  * file.
  * 
  * Scans the specified file for the indicated field name and returns the value
- * of the first matching value node. Search through non-value nodes is performed
- * in a depth-first manner, so the match found is the first value match seen
- * when when scanning down the file and earlier matches will mask matches that
- * are less deep in the tree but later in the file. Breadth-first search could
- * be implemented as an option but is not done here.
+ * of the first matching value node. By default search through non-value nodes
+ * is performed in a depth-first manner, so the match found is the first value
+ * match seen when when scanning down the file and earlier matches will mask
+ * matches that are less deep in the tree but later in the file. The
+ * breadth-first search order instead returns the least deeply nested match,
+ * taking the earliest in the file when several are equally deep.
  *
  * @author Karl DeBisschop <kdebisschop@gmail.com>
  * @since 2019-12-11
@@ -58,24 +62,88 @@ public class JsonFindValueStepPlugin implements StepPlugin {
 	@PluginProperty(title = OPT_NAME, description = OPT_NAME_DESCRIPTION)
 	private String name;
 
-	@PluginProperty(title = OPT_FIELD_NAME, description = OPT_FIELD_NAME_DESCRIPTION, required = true)
+	@PluginProperty(title = OPT_FIELD_NAME, description = OPT_FIELD_NAME_DESCRIPTION)
 	private String fieldName;
 
+	@PluginProperty(title = OPT_FIELD_PATH, description = OPT_FIELD_PATH_DESCRIPTION)
+	private String fieldPath;
+
+	@PluginProperty(title = OPT_FIELDS, description = OPT_FIELDS_DESCRIPTION)
+	@RenderingOption(key = DISPLAY_TYPE_KEY, value = "MULTI_LINE")
+	private String fields;
+
+	@PluginProperty(title = OPT_SEARCH_ORDER, description = OPT_SEARCH_ORDER_DESCRIPTION, defaultValue = DEPTH_FIRST)
+	@SelectValues(values = { DEPTH_FIRST, BREADTH_FIRST })
+	private String searchOrder;
+
 	@PluginProperty(title = OPT_GLOBAL, description = OPT_GLOBAL_DESCRIPTION, required = true, defaultValue = "false")
 	private boolean elevateToGlobal;
 
+	@PluginProperty(title = OPT_ENGINE, description = OPT_JSON_ENGINE_DESCRIPTION, defaultValue = ENGINE_AUTO)
+	@SelectValues(values = { ENGINE_AUTO, ENGINE_TREE, ENGINE_STREAM })
+	private String engine;
+
+	@PluginProperty(title = OPT_MAX_BYTES, description = OPT_MAX_BYTES_DESCRIPTION, defaultValue = "0")
+	private long maxBytes;
+
+	@PluginProperty(title = OPT_MAX_LINES, description = OPT_MAX_LINES_DESCRIPTION, defaultValue = "0")
+	private long maxLines;
+
+	@PluginProperty(title = OPT_TIMEOUT, description = OPT_TIMEOUT_DESCRIPTION, defaultValue = "0")
+	private int timeout;
+
+	@PluginProperty(title = OPT_PARTIAL_RESULTS, description = OPT_PARTIAL_RESULTS_DESCRIPTION, defaultValue = "false")
+	private boolean keepPartialResults;
+
+	@PluginProperty(title = OPT_METRICS_LEVEL, description = OPT_METRICS_LEVEL_DESCRIPTION, defaultValue = METRICS_LEVEL_DEBUG)
+	@SelectValues(values = { METRICS_LEVEL_DEBUG, METRICS_LEVEL_VERBOSE, METRICS_LEVEL_INFO, METRICS_LEVEL_OFF })
+	private String metricsLevel;
+
+	@PluginProperty(title = OPT_METRICS_OUTPUT, description = OPT_METRICS_OUTPUT_DESCRIPTION, defaultValue = "false")
+	private boolean metricsOutput;
+
 	@Override
 	public void executeStep(PluginStepContext context, Map<String, Object> configuration) throws StepException {
-		path = configuration.getOrDefault("path", defaultString(path)).toString();
-		group = configuration.getOrDefault("group", defaultString(group)).toString();
-		name = configuration.getOrDefault("name", defaultString(name)).toString();
-		fieldName = configuration.getOrDefault("fieldName", defaultString(fieldName)).toString();
-		elevateToGlobal = configuration.getOrDefault("elevateToGlobal", elevateToGlobal).toString().equals("true");
+		LookupRequest request;
+		try {
+			request = LookupRequest.builder(configuration).path(path).group(group).name(name)
+					.fieldName(fieldName).fieldPath(fieldPath).fields(fields).searchOrder(searchOrder)
+					.elevateToGlobal(elevateToGlobal).engine(engine).maxBytes(maxBytes).maxLines(maxLines).timeout(timeout).keepPartialResults(keepPartialResults)
+					.metricsLevel(metricsLevel).metricsOutput(metricsOutput).build();
+		} catch (IllegalArgumentException e) {
+			String msg = e.getMessage();
+			throw new StepException(msg, StepFailureReason.ConfigurationFailure);
+		}
+
+		JsonPathQuery query = null;
+		if (!request.getFieldPath().trim().isEmpty()) {
+			try {
+				query = JsonPathQuery.compile(request.getFieldPath());
+			} catch (IllegalArgumentException e) {
+				throw new StepException(e.getMessage(), StepFailureReason.ConfigurationFailure);
+			}
+		}
+		Map<String, String> lookups = request.lookups(query == null);
+		if (query == null && lookups.isEmpty()) {
+			throw new StepException("No field name given", StepFailureReason.ConfigurationFailure);
+		}
+		if (query != null && !lookups.isEmpty()) {
+			String msg = "Field Path cannot be combined with Fields";
+			throw new StepException(msg, StepFailureReason.ConfigurationFailure);
+		}
 
 		try {
-			(new FileLookupUtils(context)).scanJsonFile(path, fieldName, group, name, elevateToGlobal);
+			FileLookupUtils utils = new FileLookupUtils(context, request);
+			if (query != null) {
+				utils.queryJsonFile(request.getPath(), query, request.getGroup(), request.getName(),
+						request.isElevateToGlobal());
+			} else {
+				utils.scanJsonFile(request.getPath(), lookups, request.getGroup(), request.isElevateToGlobal());
+			}
+		} catch (LookupBudgetException e) {
+			throw new StepException(e.getMessage(), e, FileLookupFailureReason.BUDGET_EXCEEDED);
 		} catch (IOException e) {
-			throw new StepException("Could not read/parse file " + path, e, FileLookupFailureReason.FILE_NOT_READABLE);
+			throw new StepException("Could not read/parse file " + request.getPath(), e, FileLookupFailureReason.FILE_NOT_READABLE);
 		}
 	}
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+
+/**
+ * An anchored lookup of one value by its path from the document root.
+ *
+ * Accepts a JSON Pointer such as "/launchConfig/environment/SITE" or the
+ * matching subset of JsonPath: "$", then any number of ".name", "['name']"
+ * or "[index]" steps, as in "$.instanceIds[0]". Wildcards, recursive descent
+ * and filters are rejected, so every expression names at most one value.
+ *
+ * Both forms compile to the same JsonPointer. Against a stream the pointer is
+ * followed one step at a time: at each level only the member on the path is
+ * entered and its siblings are skipped without being built into nodes, and
+ * reading stops as soon as the value is reached or the path is known to be
+ * absent.
+ */
+final class JsonPathQuery implements JsonSearch<String> {
+
+	private final String expression;
+
+	private final JsonPointer pointer;
+
+	private JsonPathQuery(String expression, JsonPointer pointer) {
+		this.expression = expression;
+		this.pointer = pointer;
+	}
+
+	/**
+	 * @throws IllegalArgumentException When the expression is not a supported path.
+	 */
+	static JsonPathQuery compile(String expression) {
+		String trimmed = expression.trim();
+		if (trimmed.startsWith("$")) {
+			return new JsonPathQuery(expression, JsonPointer.compile(pointerFromJsonPath(trimmed)));
+		}
+		if (trimmed.isEmpty() || trimmed.startsWith("/")) {
+			return new JsonPathQuery(expression, JsonPointer.compile(trimmed));
+		}
+		throw new IllegalArgumentException("Path must start with '/' or '$': " + expression);
+	}
+
+	JsonPointer pointer() {
+		return pointer;
+	}
+
+	@Override
+	public String search(JsonParser parser) throws IOException {
+		JsonToken token = parser.nextToken();
+		JsonPointer remaining = pointer;
+		while (token != null && !remaining.matches()) {
+			if (token == JsonToken.START_OBJECT) {
+				JsonPointer next = null;
+				while (next == null && parser.nextToken() == JsonToken.FIELD_NAME) {
+					next = remaining.matchProperty(parser.getCurrentName());
+					token = parser.nextToken();
+					if (next == null) {
+						parser.skipChildren();
+					}
+				}
+				if (next == null) {
+					return null;
+				}
+				remaining = next;
+			} else if (token == JsonToken.START_ARRAY) {
+				int index = remaining.getMatchingIndex();
+				if (index < 0) {
+					return null;
+				}
+				for (int i = 0; i <= index; i++) {
+					token = parser.nextToken();
+					if (token == null || token == JsonToken.END_ARRAY) {
+						return null;
+					}
+					if (i < index) {
+						parser.skipChildren();
+					}
+				}
+				remaining = remaining.tail();
+			} else {
+				return null;
+			}
+		}
+		return token != null && token.isScalarValue() ? JsonFieldFinder.scalarText(parser, token) : null;
+	}
+
+	@Override
+	public String search(JsonNode root) {
+		JsonNode node = root.at(pointer);
+		return node.isValueNode() ? node.asText() : null;
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	/**
+	 * Rewrites a JsonPath of plain member and index steps as a JSON Pointer.
+	 */
+	static String pointerFromJsonPath(String path) {
+		StringBuilder pointer = new StringBuilder();
+		int i = 1;
+		while (i < path.length()) {
+			char c = path.charAt(i);
+			if (c == '.') {
+				int end = i + 1;
+				while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+					end++;
+				}
+				String name = path.substring(i + 1, end);
+				if (name.isEmpty() || name.equals("*")) {
+					throw unsupported(path);
+				}
+				appendSegment(pointer, name);
+				i = end;
+			} else if (c == '[' && i + 1 < path.length() && (path.charAt(i + 1) == '\'' || path.charAt(i + 1) == '"')) {
+				char quote = path.charAt(i + 1);
+				int end = path.indexOf(quote, i + 2);
+				if (end < 0 || end + 1 >= path.length() || path.charAt(end + 1) != ']') {
+					throw unsupported(path);
+				}
+				appendSegment(pointer, path.substring(i + 2, end));
+				i = end + 2;
+			} else if (c == '[') {
+				int end = path.indexOf(']', i);
+				if (end < 0 || !path.substring(i + 1, end).matches("\\d+")) {
+					throw unsupported(path);
+				}
+				pointer.append('/').append(path, i + 1, end);
+				i = end + 1;
+			} else {
+				throw unsupported(path);
+			}
+		}
+		return pointer.toString();
+	}
+
+	private static void appendSegment(StringBuilder pointer, String name) {
+		pointer.append('/').append(name.replace("~", "~0").replace("/", "~1"));
+	}
+
+	private static IllegalArgumentException unsupported(String path) {
+		return new IllegalArgumentException("Unsupported path expression: " + path);
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+
+/**
+ * A lookup that can run against a JSON document either while it streams from
+ * the file or against the tree already parsed into the document cache. Both
+ * forms must give the same answer for the same document.
+ *
+ * @param <T> The result of the lookup.
+ */
+interface JsonSearch<T> {
+
+	/**
+	 * @param parser A parser positioned before the document to search.
+	 */
+	T search(JsonParser parser) throws IOException;
+
+	T search(JsonNode root);
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Jackson objects shared by every lookup in the plugin's classloader.
+ *
+ * Building an ObjectMapper is expensive and each one owns its own symbol
+ * tables, so a mapper per step run pays the setup cost every time and never
+ * reuses interned field names. The mapper is configured once and only read
+ * afterwards, which makes it and its reader safe to share between threads.
+ * Nothing is built until the first JSON lookup touches this class.
+ */
+final class JsonSupport {
+
+	private JsonSupport() {
+		throw new IllegalStateException("Utility class");
+	}
+
+	private static final class Holder {
+		static final ObjectMapper MAPPER = new ObjectMapper();
+		static final ObjectReader TREE_READER = MAPPER.readerFor(JsonNode.class);
+	}
+
+	static ObjectMapper mapper() {
+		return Holder.MAPPER;
+	}
+
+	static ObjectReader treeReader() {
+		return Holder.TREE_READER;
+	}
+
+	static JsonFactory factory() {
+		return Holder.MAPPER.getFactory();
+	}
+}
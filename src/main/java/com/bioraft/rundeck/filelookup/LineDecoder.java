@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns the raw lines of the byte-level scanners into the text the patterns
+ * see, decoded with the same charset as the reader engine so that every engine
+ * finds the same values in the same file.
+ *
+ * A ByteCharSequence reads one char per byte, which is the decoded text only
+ * when every byte of the line is ASCII and the charset maps ASCII bytes to
+ * themselves. Such lines, the usual case in logs and configuration files, are
+ * passed on as the view without copying; any other line is decoded into a
+ * String, so multi-byte characters are single chars to the regex and a byte
+ * such as 0x85 inside one is never taken for a line terminator.
+ */
+final class LineDecoder {
+
+	private static final LineDecoder PLATFORM = new LineDecoder(Charset.defaultCharset());
+
+	private final Charset charset;
+
+	private final boolean asciiCompatible;
+
+	LineDecoder(Charset charset) {
+		this.charset = charset;
+		this.asciiCompatible = isAsciiCompatible(charset);
+	}
+
+	/**
+	 * @return The decoder for the platform charset, which the reader engine uses.
+	 */
+	static LineDecoder platform() {
+		return PLATFORM;
+	}
+
+	Charset charset() {
+		return charset;
+	}
+
+	/**
+	 * @return True if the charset encodes ASCII as the same single bytes, so that
+	 *         line breaks and ASCII literals can be searched for as bytes.
+	 */
+	boolean isAsciiCompatible() {
+		return asciiCompatible;
+	}
+
+	CharSequence decode(ByteCharSequence line) {
+		return asciiCompatible && line.isAscii() ? line : line.toString(charset);
+	}
+
+	private static boolean isAsciiCompatible(Charset charset) {
+		byte[] ascii = new byte[128];
+		for (int i = 0; i < ascii.length; i++) {
+			ascii[i] = (byte) i;
+		}
+		return new String(ascii, charset).equals(new String(ascii, StandardCharsets.US_ASCII));
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+/**
+ * Receives the lines of a file, in order, from one of the scan engines.
+ */
+interface LineVisitor {
+
+	/**
+	 * @param line The line without its terminator. Engines may reuse the object
+	 *             passed in, so it must be copied if it is kept.
+	 * @return True to stop scanning.
+	 */
+	boolean visit(CharSequence line);
+
+	/**
+	 * Hears of text an engine passed over without visiting its lines, such as
+	 * the stretch between two hits of a literal search. A long search reports
+	 * its progress in several regions, so the visitor can stop it on time.
+	 *
+	 * @param region The text passed over. Engines may reuse the object passed
+	 *               in, so it must be copied if it is kept.
+	 * @return True to stop scanning.
+	 */
+	default boolean skipped(CharSequence region) {
+		return false;
+	}
+}
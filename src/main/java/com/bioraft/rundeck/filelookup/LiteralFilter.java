@@ -0,0 +1,386 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Fast rejection of lines that cannot match a pattern.
+ *
+ * Most scan patterns contain a literal that every match must include, such as
+ * "DB_HOST=" in "^DB_HOST=(.*)". A Boyer-Moore-Horspool search for that literal
+ * is far cheaper than running the regular expression, so lines without it are
+ * rejected before the matcher sees them.
+ *
+ * Literals are only taken from the top level of the pattern: anything inside
+ * a group, next to an alternation, or under a quantifier that allows zero
+ * repetitions may be absent from a match. When no literal can be proven
+ * required, forPattern returns null and every line goes to the matcher.
+ */
+final class LiteralFilter {
+
+	/**
+	 * Shorter literals reject too few lines to pay for the extra pass.
+	 */
+	static final int MIN_LITERAL_LENGTH = 2;
+
+	private static final int UNSAFE_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.CANON_EQ
+			| Pattern.UNICODE_CASE;
+
+	private final char[] literal;
+
+	private final String text;
+
+	private final int[] shift = new int[128];
+
+	private LiteralFilter(String literal) {
+		this.text = literal;
+		this.literal = literal.toCharArray();
+		int last = this.literal.length - 1;
+		Arrays.fill(shift, this.literal.length);
+		for (int i = 0; i < last; i++) {
+			shift[this.literal[i]] = last - i;
+		}
+	}
+
+	/**
+	 * @return A filter for the pattern's longest required literal, or null if there is none.
+	 */
+	static LiteralFilter forPattern(Pattern pattern) {
+		String literal = requiredLiteral(pattern.pattern(), pattern.flags());
+		return literal == null ? null : new LiteralFilter(literal);
+	}
+
+	String literal() {
+		return text;
+	}
+
+	boolean containedIn(CharSequence line) {
+		if (line instanceof String) {
+			// String.indexOf is a JIT intrinsic and beats any search written here.
+			return ((String) line).indexOf(text) >= 0;
+		}
+		return indexIn(line, 0, line.length()) >= 0;
+	}
+
+	/**
+	 * Horspool search over chars. Literal chars are ASCII, so any other char
+	 * shifts by the full literal length.
+	 */
+	int indexIn(CharSequence text, int from, int to) {
+		int last = literal.length - 1;
+		int i = from;
+		while (i + last < to) {
+			int j = last;
+			while (text.charAt(i + j) == literal[j]) {
+				if (j == 0) {
+					return i;
+				}
+				j--;
+			}
+			char c = text.charAt(i + last);
+			i += c < 128 ? shift[c] : literal.length;
+		}
+		return -1;
+	}
+
+	/**
+	 * Horspool search over bytes. The literal is ASCII, so its bytes are its chars.
+	 */
+	int indexIn(ByteBuffer buffer, int from, int to) {
+		int last = literal.length - 1;
+		int i = from;
+		while (i + last < to) {
+			int j = last;
+			while (buffer.get(i + j) == literal[j]) {
+				if (j == 0) {
+					return i;
+				}
+				j--;
+			}
+			byte b = buffer.get(i + last);
+			i += b >= 0 ? shift[b] : literal.length;
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the longest run of ASCII literal characters at the top level of a
+	 * regular expression that every match must contain.
+	 *
+	 * @return The literal, or null if none of at least MIN_LITERAL_LENGTH chars is certain.
+	 */
+	static String requiredLiteral(String regex, int flags) {
+		if ((flags & Pattern.LITERAL) != 0) {
+			return regex.length() >= MIN_LITERAL_LENGTH && ByteCharSequence.isAscii(regex) ? regex : null;
+		}
+		if ((flags & UNSAFE_FLAGS) != 0) {
+			return null;
+		}
+
+		String best = "";
+		StringBuilder run = new StringBuilder();
+		int depth = 0;
+		int i = 0;
+		int length = regex.length();
+		while (i < length) {
+			char c = regex.charAt(i);
+			if (depth > 0) {
+				// Nothing inside a group is certain to appear in a match.
+				if (c == '\\') {
+					i = skipEscape(regex, i);
+					continue;
+				} else if (c == '[') {
+					i = skipClass(regex, i);
+					continue;
+				} else if (c == '(') {
+					depth++;
+				} else if (c == ')' && --depth == 0 && i + 1 < length && isQuantifierStart(regex, i + 1)) {
+					// The group's quantifier must not be read as a literal.
+					i = skipQuantifier(regex, i + 1);
+					continue;
+				}
+				i++;
+				continue;
+			}
+
+			int atomStart = run.length();
+			int next = i + 1;
+			switch (c) {
+			case '|':
+				// Alternation at the top level: no single literal is required.
+				return null;
+			case '(':
+				if (hasInlineFlags(regex, i)) {
+					return null;
+				}
+				depth++;
+				best = longer(best, run);
+				run.setLength(0);
+				i = next;
+				continue;
+			case '[':
+				if (isSingleCharClass(regex, i)) {
+					// A class like "[.]" is just a quoted character.
+					run.append(regex.charAt(i + 1));
+					i += 3;
+					break;
+				}
+				best = longer(best, run);
+				run.setLength(0);
+				i = skipClass(regex, i);
+				atomStart = -1;
+				break;
+			case '.':
+			case '^':
+			case '$':
+				best = longer(best, run);
+				run.setLength(0);
+				atomStart = -1;
+				i = next;
+				break;
+			case '\\':
+				if (next >= length) {
+					return null;
+				}
+				char escaped = regex.charAt(next);
+				if (escaped == 'Q') {
+					int end = regex.indexOf("\\E", next + 1);
+					String quoted = end < 0 ? regex.substring(next + 1) : regex.substring(next + 1, end);
+					i = skipEscape(regex, i);
+					if (ByteCharSequence.isAscii(quoted) && !quoted.isEmpty()) {
+						run.append(quoted);
+						atomStart = run.length() - 1;
+					} else {
+						best = longer(best, run);
+						run.setLength(0);
+						atomStart = -1;
+					}
+					break;
+				}
+				i = skipEscape(regex, i);
+				if (!Character.isLetterOrDigit(escaped) && escaped < 128) {
+					run.append(escaped);
+				} else {
+					// Character classes, anchors, back references and code points.
+					best = longer(best, run);
+					run.setLength(0);
+					atomStart = -1;
+				}
+				break;
+			default:
+				i = next;
+				if (c < 128) {
+					run.append(c);
+				} else {
+					best = longer(best, run);
+					run.setLength(0);
+					atomStart = -1;
+				}
+				break;
+			}
+
+			// A quantifier applies to the atom just read.
+			if (i < length && isQuantifierStart(regex, i)) {
+				boolean optional = regex.charAt(i) == '?' || regex.charAt(i) == '*' || minimumRepeat(regex, i) == 0;
+				i = skipQuantifier(regex, i);
+				if (atomStart >= 0) {
+					if (optional) {
+						run.setLength(atomStart);
+					} else {
+						run.setLength(atomStart + 1);
+					}
+				}
+				best = longer(best, run);
+				run.setLength(0);
+			}
+		}
+		best = longer(best, run);
+		return best.length() >= MIN_LITERAL_LENGTH ? best : null;
+	}
+
+	private static String longer(String best, StringBuilder run) {
+		return run.length() > best.length() ? run.toString() : best;
+	}
+
+	private static boolean hasInlineFlags(String regex, int open) {
+		if (open + 1 >= regex.length() || regex.charAt(open + 1) != '?') {
+			return false;
+		}
+		int i = open + 2;
+		while (i < regex.length() && (Character.isLetter(regex.charAt(i)) || regex.charAt(i) == '-')) {
+			i++;
+		}
+		return i > open + 2 && i < regex.length() && (regex.charAt(i) == ')' || regex.charAt(i) == ':');
+	}
+
+	/**
+	 * @return The index just past the escape sequence that starts at i,
+	 *         including any arguments such as hex digits or a property name.
+	 */
+	private static int skipEscape(String regex, int i) {
+		int length = regex.length();
+		if (i + 1 >= length) {
+			return length;
+		}
+		char escaped = regex.charAt(i + 1);
+		int j = i + 2;
+		switch (escaped) {
+		case 'Q':
+			int end = regex.indexOf("\\E", j);
+			return end < 0 ? length : end + 2;
+		case 'x':
+			return j < length && regex.charAt(j) == '{' ? skipPast(regex, j, '}') : Math.min(j + 2, length);
+		case 'u':
+			return Math.min(j + 4, length);
+		case 'c':
+			return Math.min(j + 1, length);
+		case 'p':
+		case 'P':
+		case 'N':
+			return j < length && regex.charAt(j) == '{' ? skipPast(regex, j, '}') : Math.min(j + 1, length);
+		case 'k':
+			return skipPast(regex, j, '>');
+		default:
+			if (Character.isDigit(escaped)) {
+				// Octal escapes and back references run on over following digits.
+				while (j < length && Character.isDigit(regex.charAt(j))) {
+					j++;
+				}
+			}
+			return j;
+		}
+	}
+
+	private static int skipPast(String regex, int from, char close) {
+		int end = regex.indexOf(close, from);
+		return end < 0 ? regex.length() : end + 1;
+	}
+
+	private static int skipClass(String regex, int open) {
+		int depth = 0;
+		int i = open;
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i = skipEscape(regex, i);
+				continue;
+			}
+			if (c == '[') {
+				depth++;
+				// A ']' right after '[' or '[^' is a literal member of the class.
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+					i++;
+				}
+				if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+					i++;
+				}
+			} else if (c == ']' && --depth == 0) {
+				return i + 1;
+			}
+			i++;
+		}
+		return regex.length();
+	}
+
+	private static boolean isSingleCharClass(String regex, int open) {
+		if (open + 2 >= regex.length() || regex.charAt(open + 2) != ']') {
+			return false;
+		}
+		char member = regex.charAt(open + 1);
+		return member < 128 && member != '^' && member != '[' && member != ']' && member != '\\';
+	}
+
+	private static boolean isQuantifierStart(String regex, int i) {
+		char c = regex.charAt(i);
+		return c == '?' || c == '*' || c == '+' || (c == '{' && minimumRepeat(regex, i) >= 0);
+	}
+
+	/**
+	 * @return The lower bound of a {n}, {n,} or {n,m} quantifier at i, 1 for other
+	 *         quantifiers, or -1 if the brace does not start a quantifier.
+	 */
+	private static int minimumRepeat(String regex, int i) {
+		if (regex.charAt(i) != '{') {
+			return 1;
+		}
+		int j = i + 1;
+		while (j < regex.length() && Character.isDigit(regex.charAt(j))) {
+			j++;
+		}
+		if (j == i + 1 || j >= regex.length()) {
+			return -1;
+		}
+		return Integer.parseInt(regex.substring(i + 1, j));
+	}
+
+	private static int skipQuantifier(String regex, int i) {
+		int j = i;
+		if (regex.charAt(j) == '{') {
+			j = regex.indexOf('}', j);
+			j = j < 0 ? regex.length() : j + 1;
+		} else {
+			j++;
+		}
+		// Lazy and possessive suffixes.
+		if (j < regex.length() && (regex.charAt(j) == '?' || regex.charAt(j) == '+')) {
+			j++;
+		}
+		return j;
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.common.INodeEntry;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Runs node commands as processes on this machine, whatever the node.
+ *
+ * A stand-in for the node's execution service, so that node scans can be run
+ * in tests, or on a Rundeck server that is itself the node. Lines are read as
+ * the process writes them, and the process is killed as soon as the visitor
+ * has seen enough. What it writes to standard error goes to ours.
+ */
+class LocalCommandRunner implements NodeCommandRunner {
+
+	@Override
+	public int run(INodeEntry node, List<String> command, LineVisitor output) throws IOException {
+		Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		try {
+			process.getOutputStream().close();
+			try (CharLineReader reader = new CharLineReader(
+					new InputStreamReader(process.getInputStream(), Charset.defaultCharset()))) {
+				CharSequence line;
+				while ((line = reader.readLine()) != null) {
+					if (output.visit(line)) {
+						return 0;
+					}
+				}
+			}
+			return process.waitFor();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Command cancelled");
+		} finally {
+			process.destroy();
+		}
+	}
+}
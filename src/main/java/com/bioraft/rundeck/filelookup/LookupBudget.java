@@ -0,0 +1,234 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits on the work of one lookup: bytes read, lines read and time taken.
+ *
+ * Bytes are counted as they are read from streams; memory-mapped and reverse
+ * scans reserve the region they cover up front, cut short at a line break to
+ * fit what is left. Lines are the lines of the file a scan has got through,
+ * whether handed to the patterns or passed over by a literal search, or the
+ * line breaks read from a JSON or YAML document; so unlike the lines in
+ * LookupMetrics they do not depend on the engine. Lines passed over are only
+ * counted when there is a line limit. The deadline is checked wherever bytes
+ * or lines are counted, and at least every MappedFileScanner.SEARCH_STEP bytes
+ * of a literal search. The files of a glob are read on several threads and
+ * share one budget, so its counters are atomic.
+ *
+ * A lookup that runs out stops at its next check: a read from a stream fails
+ * with LookupBudgetException, and a scan stops visiting lines once the lines
+ * or the time run out. A region already cut to fit the bytes is read to its
+ * end. FileLookupUtils then fails the step or keeps the values found so far.
+ */
+final class LookupBudget {
+
+	private final long maxBytes;
+
+	private final long maxLines;
+
+	private final long timeoutNanos;
+
+	private final long start = System.nanoTime();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final AtomicLong lines = new AtomicLong();
+
+	/**
+	 * The limit that ran out, or null while there is budget left.
+	 */
+	private volatile String exhausted;
+
+	/**
+	 * Starts the clock; a limit of 0 or less means no limit.
+	 */
+	LookupBudget(long maxBytes, long maxLines, long timeoutMillis) {
+		this.maxBytes = Math.max(maxBytes, 0);
+		this.maxLines = Math.max(maxLines, 0);
+		this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(timeoutMillis, 0));
+	}
+
+	boolean isLimited() {
+		return maxBytes > 0 || maxLines > 0 || timeoutNanos > 0;
+	}
+
+	boolean isExhausted() {
+		return exhausted != null;
+	}
+
+	/**
+	 * Counts one line.
+	 *
+	 * @return False once the lines or the time have run out.
+	 */
+	boolean chargeLine() {
+		return addLines(1) && withinTime();
+	}
+
+	/**
+	 * Counts the lines in text a scan passed over without visiting it, when
+	 * there is a line limit.
+	 *
+	 * @return False once the lines or the time have run out.
+	 */
+	boolean chargeSkipped(CharSequence region) {
+		return (maxLines == 0 || addLines(lineBreaks(region))) && withinTime();
+	}
+
+	/**
+	 * Reserves bytes for a region read without a stream.
+	 *
+	 * @return The number of bytes that may be read, which is less than asked
+	 *         for when the budget cannot cover them all.
+	 */
+	long reserveBytes(long length) {
+		if (maxBytes == 0) {
+			bytes.addAndGet(length);
+			return length;
+		}
+		long before = bytes.getAndAdd(length);
+		long granted = Math.max(0, Math.min(length, maxBytes - before));
+		if (granted < length) {
+			bytes.addAndGet(granted - length);
+			exhaust("Max Bytes (" + maxBytes + ")");
+		}
+		return granted;
+	}
+
+	/**
+	 * @param countLines Whether line breaks read count as lines.
+	 * @return A stream that counts what is read from the given one and fails
+	 *         with LookupBudgetException once the budget has run out.
+	 */
+	InputStream limit(InputStream in, boolean countLines) {
+		return new FilterInputStream(in) {
+			@Override
+			public int read() throws IOException {
+				check();
+				int b = super.read();
+				if (b >= 0) {
+					charge(1, countLines && b == '\n' ? 1 : 0);
+				}
+				return b;
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				check();
+				int read = super.read(buffer, offset, length);
+				if (read > 0) {
+					int breaks = 0;
+					if (countLines) {
+						for (int i = offset; i < offset + read; i++) {
+							if (buffer[i] == '\n') {
+								breaks++;
+							}
+						}
+					}
+					charge(read, breaks);
+				}
+				return read;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				check();
+				long skipped = super.skip(n);
+				charge(skipped, 0);
+				return skipped;
+			}
+		};
+	}
+
+	/**
+	 * @return How far the lookup got and which limit stopped it.
+	 */
+	String progress() {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		String progress = String.format(Locale.ROOT, "stopped after %d bytes, %d lines and %.3f s", bytes.get(),
+				lines.get(), seconds);
+		return exhausted == null ? progress : progress + ": " + exhausted + " reached";
+	}
+
+	private void charge(long read, long breaks) throws LookupBudgetException {
+		long total = bytes.addAndGet(read);
+		if (maxBytes > 0 && total > maxBytes) {
+			exhaust("Max Bytes (" + maxBytes + ")");
+		}
+		addLines(breaks);
+		check();
+	}
+
+	/**
+	 * Adds lines up to the limit; lines past it are not read, so they do not
+	 * count.
+	 *
+	 * @return False if the lines did not all fit.
+	 */
+	private boolean addLines(long count) {
+		while (true) {
+			long before = lines.get();
+			long after = maxLines > 0 ? Math.min(before + count, maxLines) : before + count;
+			if (lines.compareAndSet(before, after)) {
+				if (after < before + count) {
+					exhaust("Max Lines (" + maxLines + ")");
+					return false;
+				}
+				return true;
+			}
+		}
+	}
+
+	private static long lineBreaks(CharSequence region) {
+		long breaks = 0;
+		int length = region.length();
+		for (int i = 0; i < length; i++) {
+			char c = region.charAt(i);
+			if (c == '\n' || (c == '\r' && (i + 1 == length || region.charAt(i + 1) != '\n'))) {
+				breaks++;
+			}
+		}
+		return breaks;
+	}
+
+	private void check() throws LookupBudgetException {
+		if (!withinTime() || exhausted != null) {
+			throw new LookupBudgetException(progress());
+		}
+	}
+
+	private boolean withinTime() {
+		if (timeoutNanos > 0 && System.nanoTime() - start > timeoutNanos) {
+			exhaust("Timeout (" + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) / 1000.0 + " s)");
+			return false;
+		}
+		return true;
+	}
+
+	private void exhaust(String limit) {
+		if (exhausted == null) {
+			exhausted = limit;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.util.Locale;
+
+/**
+ * The ways a lookup can read a file, and the choice between them.
+ *
+ * JSON documents are either parsed into a tree, which the document cache keeps
+ * for later lookups of the same file, or searched while they stream from the
+ * file, which holds nothing in memory. Text scans read lines through a reader,
+ * through a memory mapping, or through a memory mapping split across threads;
+ * a scan from the end always reads backwards.
+ *
+ * The engine is chosen per file from its size, the shape of the query and the
+ * free heap, unless the step forces one. A forced engine is used wherever the
+ * file allows it: a compressed file can only be read as a stream, only ASCII
+ * patterns can run on a memory mapping, and a scan from the end only reads
+ * backwards.
+ */
+enum LookupEngine {
+	AUTO, TREE, STREAM, READER, MAPPED, PARALLEL, REVERSE;
+
+	/**
+	 * A tree is only built when it would fill at most this fraction of the free heap.
+	 */
+	static final int HEAP_FRACTION = 4;
+
+	/**
+	 * Path queries stream documents of this size or more: they skip every
+	 * subtree off their path and stop at the value, so a tree built for them is
+	 * mostly waste.
+	 */
+	static final long STREAM_QUERY_THRESHOLD = 1024L * 1024;
+
+	/**
+	 * Reads the engine option; anything but a known engine name means AUTO.
+	 */
+	static LookupEngine of(String option) {
+		String name = option == null ? "" : option.trim().toUpperCase(Locale.ROOT);
+		for (LookupEngine engine : values()) {
+			if (engine.name().equals(name)) {
+				return engine;
+			}
+		}
+		return AUTO;
+	}
+
+	/**
+	 * @return The engine's name as written in the step option.
+	 */
+	String option() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Picks TREE or STREAM for a JSON document.
+	 *
+	 * @param cacheable Whether the document cache would keep the tree.
+	 * @param pathQuery Whether the lookup is an anchored path rather than a
+	 *                  search for field names.
+	 */
+	static LookupEngine forJson(LookupEngine forced, boolean compressed, boolean cacheable, boolean pathQuery,
+			long size, long freeHeap) {
+		if (forced == TREE || forced == STREAM) {
+			return forced;
+		}
+		if (compressed || !cacheable || (pathQuery && size >= STREAM_QUERY_THRESHOLD)) {
+			return STREAM;
+		}
+		return size * JsonDocumentCache.BYTES_PER_SOURCE_BYTE <= freeHeap / HEAP_FRACTION ? TREE : STREAM;
+	}
+
+	/**
+	 * Picks the engine for a text scan of an uncompressed file.
+	 *
+	 * Without a forced engine, files below the mapped threshold are read
+	 * through a reader and larger ones through a mapping. The mapping is only
+	 * split across threads when more than one is allowed and the scan has to
+	 * read the whole file anyway: a scan that stops at its first match would
+	 * have threads reading chunks past it for nothing.
+	 *
+	 * @param stopsEarly Whether the scan can end before the end of the file.
+	 */
+	static LookupEngine forScan(LookupEngine forced, long size, boolean ascii, boolean fromEnd, boolean stopsEarly,
+			int parallelism, long mappedThreshold) {
+		if (fromEnd) {
+			return REVERSE;
+		}
+		if (!ascii) {
+			return READER;
+		}
+		if (forced == READER || forced == MAPPED || forced == PARALLEL) {
+			return forced;
+		}
+		if (size < mappedThreshold) {
+			return READER;
+		}
+		return parallelism > 1 && !stopsEarly ? PARALLEL : MAPPED;
+	}
+
+	/**
+	 * @return The heap still available to this JVM, in bytes.
+	 */
+	static long freeHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+	}
+}
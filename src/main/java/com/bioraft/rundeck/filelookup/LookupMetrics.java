@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the work done by one lookup, so a slow step can be traced to I/O,
+ * parsing or matching without a profiler.
+ *
+ * Bytes are those read through streams; memory-mapped and reverse scans count
+ * the size of the region they cover instead. Lines are the lines handed to the
+ * patterns, which excludes lines a mapped scan skips by literal search. Parse
+ * time is spent building JSON trees; search time covers everything else,
+ * including parsing while streaming. Coalesced files were read by a concurrent
+ * lookup whose result this one shared. Counters are atomic because the files
+ * of a glob are read on several threads.
+ */
+final class LookupMetrics {
+
+	private final AtomicLong files = new AtomicLong();
+
+	private final AtomicLong bytesRead = new AtomicLong();
+
+	private final AtomicLong lines = new AtomicLong();
+
+	private final AtomicLong matches = new AtomicLong();
+
+	private final AtomicLong parseNanos = new AtomicLong();
+
+	private final AtomicLong searchNanos = new AtomicLong();
+
+	private final AtomicLong cacheHits = new AtomicLong();
+
+	private final AtomicLong cacheMisses = new AtomicLong();
+
+	private final AtomicLong coalesced = new AtomicLong();
+
+	void addFile() {
+		files.incrementAndGet();
+	}
+
+	void addBytes(long bytes) {
+		bytesRead.addAndGet(bytes);
+	}
+
+	void addLines(long count) {
+		lines.addAndGet(count);
+	}
+
+	void addMatches(long count) {
+		matches.addAndGet(count);
+	}
+
+	void addParseNanos(long nanos) {
+		parseNanos.addAndGet(nanos);
+	}
+
+	void addSearchNanos(long nanos) {
+		searchNanos.addAndGet(nanos);
+	}
+
+	void addCacheHit() {
+		cacheHits.incrementAndGet();
+	}
+
+	void addCacheMiss() {
+		cacheMisses.incrementAndGet();
+	}
+
+	void addCoalesced() {
+		coalesced.incrementAndGet();
+	}
+
+	long bytesRead() {
+		return bytesRead.get();
+	}
+
+	long lines() {
+		return lines.get();
+	}
+
+	long matches() {
+		return matches.get();
+	}
+
+	long cacheHits() {
+		return cacheHits.get();
+	}
+
+	long coalesced() {
+		return coalesced.get();
+	}
+
+	/**
+	 * @return A stream that adds every byte read from the given one to bytesRead.
+	 */
+	InputStream count(InputStream in) {
+		return new FilterInputStream(in) {
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if (b >= 0) {
+					bytesRead.incrementAndGet();
+				}
+				return b;
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				int read = super.read(buffer, offset, length);
+				if (read > 0) {
+					bytesRead.addAndGet(read);
+				}
+				return read;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				long skipped = super.skip(n);
+				bytesRead.addAndGet(skipped);
+				return skipped;
+			}
+		};
+	}
+
+	/**
+	 * @return The metrics by name, in a fixed order; times are in milliseconds.
+	 */
+	Map<String, String> asMap() {
+		Map<String, String> map = new LinkedHashMap<>();
+		map.put("files", Long.toString(files.get()));
+		map.put("bytesRead", Long.toString(bytesRead.get()));
+		map.put("lines", Long.toString(lines.get()));
+		map.put("matches", Long.toString(matches.get()));
+		map.put("parseMillis", millis(parseNanos.get()));
+		map.put("searchMillis", millis(searchNanos.get()));
+		map.put("cacheHits", Long.toString(cacheHits.get()));
+		map.put("cacheMisses", Long.toString(cacheMisses.get()));
+		map.put("coalesced", Long.toString(coalesced.get()));
+		return map;
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Map.Entry<String, String> entry : asMap().entrySet()) {
+			if (builder.length() > 0) {
+				builder.append(' ');
+			}
+			builder.append(entry.getKey()).append('=').append(entry.getValue());
+		}
+		return builder.toString();
+	}
+}
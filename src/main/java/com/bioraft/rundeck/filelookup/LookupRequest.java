@@ -0,0 +1,332 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.bioraft.rundeck.filelookup.Constants.BREADTH_FIRST;
+import static com.bioraft.rundeck.filelookup.Constants.DEPTH_FIRST;
+import static com.bioraft.rundeck.filelookup.Constants.ENGINE_AUTO;
+import static com.bioraft.rundeck.filelookup.Constants.METRICS_LEVEL_DEBUG;
+import static com.bioraft.rundeck.filelookup.Constants.OPT_MAX_BYTES;
+import static com.bioraft.rundeck.filelookup.Constants.OPT_MAX_LINES;
+import static com.bioraft.rundeck.filelookup.Constants.OPT_PARALLELISM;
+import static com.bioraft.rundeck.filelookup.Constants.OPT_TIMEOUT;
+
+/**
+ * The options of one step run, resolved once from the step configuration.
+ *
+ * Rundeck may run a node step on many nodes at once through a single plugin
+ * instance, so the plugins keep nothing of a run in their fields: each run
+ * builds its own request, which cannot change afterwards, and hands it to a
+ * FileLookupUtils of its own. The plugin fields only describe the options and
+ * supply their defaults.
+ */
+final class LookupRequest {
+
+	private final String path;
+	private final String group;
+	private final String name;
+	private final String regex;
+	private final String patterns;
+	private final String fieldName;
+	private final String fieldPath;
+	private final String fields;
+	private final String searchOrder;
+	private final boolean elevateToGlobal;
+	private final boolean fromEnd;
+	private final boolean incremental;
+	private final boolean scanOnNode;
+	private final int parallelism;
+	private final String engine;
+	private final long maxBytes;
+	private final long maxLines;
+	private final int timeout;
+	private final boolean keepPartialResults;
+	private final String metricsLevel;
+	private final boolean metricsOutput;
+
+	private LookupRequest(Builder builder) {
+		path = builder.path;
+		group = builder.group;
+		name = builder.name;
+		regex = builder.regex;
+		patterns = builder.patterns;
+		fieldName = builder.fieldName;
+		fieldPath = builder.fieldPath;
+		fields = builder.fields;
+		searchOrder = builder.searchOrder;
+		elevateToGlobal = builder.elevateToGlobal;
+		fromEnd = builder.fromEnd;
+		incremental = builder.incremental;
+		scanOnNode = builder.scanOnNode;
+		parallelism = builder.parallelism;
+		engine = builder.engine;
+		maxBytes = builder.maxBytes;
+		maxLines = builder.maxLines;
+		timeout = builder.timeout;
+		keepPartialResults = builder.keepPartialResults;
+		metricsLevel = builder.metricsLevel;
+		metricsOutput = builder.metricsOutput;
+	}
+
+	/**
+	 * @param configuration The configuration of this run; read, never kept.
+	 */
+	static Builder builder(Map<String, Object> configuration) {
+		return new Builder(configuration);
+	}
+
+	String getPath() {
+		return path;
+	}
+
+	String getGroup() {
+		return group;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	String getFieldPath() {
+		return fieldPath;
+	}
+
+	boolean isElevateToGlobal() {
+		return elevateToGlobal;
+	}
+
+	boolean isBreadthFirst() {
+		return BREADTH_FIRST.equals(searchOrder);
+	}
+
+	boolean isFromEnd() {
+		return fromEnd;
+	}
+
+	boolean isIncremental() {
+		return incremental;
+	}
+
+	boolean isScanOnNode() {
+		return scanOnNode;
+	}
+
+	int getParallelism() {
+		return parallelism;
+	}
+
+	String getEngine() {
+		return engine;
+	}
+
+	long getMaxBytes() {
+		return maxBytes;
+	}
+
+	long getMaxLines() {
+		return maxLines;
+	}
+
+	/**
+	 * @return The time the lookup may take, in seconds; 0 for no limit.
+	 */
+	int getTimeout() {
+		return timeout;
+	}
+
+	boolean isKeepPartialResults() {
+		return keepPartialResults;
+	}
+
+	String getMetricsLevel() {
+		return metricsLevel;
+	}
+
+	boolean isMetricsOutput() {
+		return metricsOutput;
+	}
+
+	/**
+	 * @return The scan targets from the pattern options.
+	 * @throws IllegalArgumentException When a pattern line has no name.
+	 */
+	List<ScanTarget> targets() {
+		return ScanTarget.parse(group, name, regex, patterns);
+	}
+
+	/**
+	 * @param withFieldName Whether the single Field Name option takes part.
+	 * @return Field names by variable name, from the field options.
+	 */
+	Map<String, String> lookups(boolean withFieldName) {
+		return FileLookupUtils.jsonFields(withFieldName ? fieldName : "", name, fields);
+	}
+
+	/**
+	 * Resolves each option from the configuration, falling back to the given
+	 * default when the configuration does not have it. A numeric option that is
+	 * not a whole number is rejected with an IllegalArgumentException naming it.
+	 */
+	static final class Builder {
+		private final Map<String, Object> configuration;
+		private String path = "";
+		private String group = "";
+		private String name = "";
+		private String regex = "";
+		private String patterns = "";
+		private String fieldName = "";
+		private String fieldPath = "";
+		private String fields = "";
+		private String searchOrder = DEPTH_FIRST;
+		private boolean elevateToGlobal;
+		private boolean fromEnd;
+		private boolean incremental;
+		private boolean scanOnNode;
+		private int parallelism = 1;
+		private String engine = ENGINE_AUTO;
+		private long maxBytes;
+		private long maxLines;
+		private int timeout;
+		private boolean keepPartialResults;
+		private String metricsLevel = METRICS_LEVEL_DEBUG;
+		private boolean metricsOutput;
+
+		private Builder(Map<String, Object> configuration) {
+			this.configuration = configuration;
+		}
+
+		Builder path(String defaultValue) {
+			path = string("path", defaultValue);
+			return this;
+		}
+
+		Builder group(String defaultValue) {
+			group = string("group", defaultValue);
+			return this;
+		}
+
+		Builder name(String defaultValue) {
+			name = string("name", defaultValue);
+			return this;
+		}
+
+		Builder regex(String defaultValue) {
+			regex = string("regex", defaultValue);
+			return this;
+		}
+
+		Builder patterns(String defaultValue) {
+			patterns = string("patterns", defaultValue);
+			return this;
+		}
+
+		Builder fieldName(String defaultValue) {
+			fieldName = string("fieldName", defaultValue);
+			return this;
+		}
+
+		Builder fieldPath(String defaultValue) {
+			fieldPath = string("fieldPath", defaultValue);
+			return this;
+		}
+
+		Builder fields(String defaultValue) {
+			fields = string("fields", defaultValue);
+			return this;
+		}
+
+		Builder searchOrder(String defaultValue) {
+			searchOrder = string("searchOrder", defaultValue);
+			return this;
+		}
+
+		Builder elevateToGlobal(boolean defaultValue) {
+			elevateToGlobal = flag("elevateToGlobal", defaultValue);
+			return this;
+		}
+
+		Builder fromEnd(boolean defaultValue) {
+			fromEnd = flag("fromEnd", defaultValue);
+			return this;
+		}
+
+		Builder incremental(boolean defaultValue) {
+			incremental = flag("incremental", defaultValue);
+			return this;
+		}
+
+		Builder scanOnNode(boolean defaultValue) {
+			scanOnNode = flag("scanOnNode", defaultValue);
+			return this;
+		}
+
+		Builder parallelism(int defaultValue) {
+			parallelism = FileLookupUtils.intOption(configuration, "parallelism", OPT_PARALLELISM, defaultValue);
+			return this;
+		}
+
+		Builder engine(String defaultValue) {
+			engine = string("engine", defaultValue);
+			return this;
+		}
+
+		Builder maxBytes(long defaultValue) {
+			maxBytes = FileLookupUtils.longOption(configuration, "maxBytes", OPT_MAX_BYTES, defaultValue);
+			return this;
+		}
+
+		Builder maxLines(long defaultValue) {
+			maxLines = FileLookupUtils.longOption(configuration, "maxLines", OPT_MAX_LINES, defaultValue);
+			return this;
+		}
+
+		Builder timeout(int defaultValue) {
+			timeout = FileLookupUtils.intOption(configuration, "timeout", OPT_TIMEOUT, defaultValue);
+			return this;
+		}
+
+		Builder keepPartialResults(boolean defaultValue) {
+			keepPartialResults = flag("keepPartialResults", defaultValue);
+			return this;
+		}
+
+		Builder metricsLevel(String defaultValue) {
+			metricsLevel = string("metricsLevel", defaultValue);
+			return this;
+		}
+
+		Builder metricsOutput(boolean defaultValue) {
+			metricsOutput = flag("metricsOutput", defaultValue);
+			return this;
+		}
+
+		LookupRequest build() {
+			return new LookupRequest(this);
+		}
+
+		private String string(String key, String defaultValue) {
+			Object value = configuration.getOrDefault(key, defaultValue);
+			return value == null ? "" : value.toString();
+		}
+
+		private boolean flag(String key, boolean defaultValue) {
+			return configuration.getOrDefault(key, defaultValue).toString().equals("true");
+		}
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Line scanner over a memory-mapped file.
+ *
+ * Line boundaries are found directly in the mapped bytes and each line is
+ * handed to the visitor through one reused ByteCharSequence, so no String is
+ * allocated for ASCII lines. Other lines are decoded with the reader's charset
+ * first, through LineDecoder, so the visitor sees the same text as the reader
+ * engine would. A single mapping is limited to 2 GB,
+ * so larger files are mapped in windows; each window after the first starts
+ * at the beginning of the line the previous window cut off.
+ *
+ * Lines end at "\n", "\r" or "\r\n", as with BufferedReader.readLine().
+ *
+ * Given a LiteralFilter, the scanner searches each window for the literal and
+ * only visits the lines around its occurrences; the regions in between are
+ * never split into lines or decoded at all, only reported to the visitor as
+ * skipped, a step of the search at a time. The filter is ignored for a
+ * charset that does not encode ASCII as single bytes.
+ */
+class MappedFileScanner {
+
+	static final long DEFAULT_WINDOW_SIZE = 512L * 1024 * 1024;
+
+	private static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+	/**
+	 * Longest stretch searched for a literal before the visitor hears of the
+	 * progress, so that a search without hits still lets it stop the scan.
+	 */
+	static final int SEARCH_STEP = 1024 * 1024;
+
+	private final long windowSize;
+
+	private final LineDecoder decoder;
+
+	MappedFileScanner() {
+		this(DEFAULT_WINDOW_SIZE);
+	}
+
+	MappedFileScanner(long windowSize) {
+		this(windowSize, LineDecoder.platform());
+	}
+
+	MappedFileScanner(long windowSize, LineDecoder decoder) {
+		this.windowSize = Math.min(windowSize, MAX_WINDOW_SIZE);
+		this.decoder = decoder;
+	}
+
+	void scan(Path path, LineVisitor visitor) throws IOException {
+		scan(path, visitor, null);
+	}
+
+	/**
+	 * @param filter Only lines containing its literal are visited; null visits every line.
+	 */
+	void scan(Path path, LineVisitor visitor, LiteralFilter filter) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			scan(channel, 0, channel.size(), visitor, filter);
+		}
+	}
+
+	/**
+	 * Scans the lines between two offsets, which must be line boundaries.
+	 *
+	 * @param filter Only lines containing its literal are visited; null visits every line.
+	 * @return True if the visitor stopped the scan.
+	 */
+	boolean scan(FileChannel channel, long from, long to, LineVisitor visitor, LiteralFilter filter)
+			throws IOException {
+		if (filter != null && decoder.isAsciiCompatible()) {
+			return scanFiltered(channel, from, to, visitor, filter);
+		}
+		ByteCharSequence line = new ByteCharSequence();
+		long position = from;
+		long size = windowSize;
+		while (position < to) {
+			int length = (int) Math.min(size, to - position);
+			boolean last = position + length == to;
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+			int lineStart = 0;
+			int i = 0;
+			while (i < length) {
+				byte b = window.get(i);
+				if (b != '\n' && b != '\r') {
+					i++;
+					continue;
+				}
+				if (b == '\r' && i + 1 == length && !last) {
+					// Could be half of a "\r\n" split across windows.
+					break;
+				}
+				if (visitor.visit(decoder.decode(line.reset(window, lineStart, i)))) {
+					return true;
+				}
+				i += (b == '\r' && i + 1 < length && window.get(i + 1) == '\n') ? 2 : 1;
+				lineStart = i;
+			}
+
+			if (last) {
+				return lineStart < length && visitor.visit(decoder.decode(line.reset(window, lineStart, length)));
+			}
+			if (lineStart > 0) {
+				position += lineStart;
+			} else if (size < MAX_WINDOW_SIZE) {
+				// The window holds part of a single line; map a larger one.
+				size = Math.min(size * 2, MAX_WINDOW_SIZE);
+			} else {
+				// A line longer than the largest mapping is split.
+				if (visitor.visit(decoder.decode(line.reset(window, 0, length)))) {
+					return true;
+				}
+				position += length;
+			}
+		}
+		return false;
+	}
+
+	private boolean scanFiltered(FileChannel channel, long from, long to, LineVisitor visitor, LiteralFilter filter)
+			throws IOException {
+		ByteCharSequence line = new ByteCharSequence();
+		ByteCharSequence region = new ByteCharSequence();
+		// A hit may straddle two steps of the search, so each step overlaps the last.
+		int overlap = filter.literal().length() - 1;
+		long position = from;
+		long size = windowSize;
+		while (position < to) {
+			int length = (int) Math.min(size, to - position);
+			boolean last = position + length == to;
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+			int lineStart = 0;
+			int searchFrom = 0;
+			// Everything before this has been visited or reported as skipped.
+			int reported = 0;
+			boolean cut = false;
+			while (lineStart < length) {
+				int stepEnd = (int) Math.min(length, (long) searchFrom + SEARCH_STEP);
+				int hit = filter.indexIn(window, searchFrom, stepEnd);
+				if (hit < 0) {
+					if (stepEnd == length) {
+						break;
+					}
+					searchFrom = Math.max(searchFrom + 1, stepEnd - overlap);
+					if (visitor.skipped(region.reset(window, reported, Math.max(reported, searchFrom)))) {
+						return true;
+					}
+					reported = Math.max(reported, searchFrom);
+					continue;
+				}
+				int start = hit;
+				while (start > lineStart && !isLineBreak(window.get(start - 1))) {
+					start--;
+				}
+				int end = hit;
+				while (end < length && !isLineBreak(window.get(end))) {
+					end++;
+				}
+				if (!last && (end == length || (end + 1 == length && window.get(end) == '\r'))) {
+					// The line continues in the next window.
+					lineStart = start;
+					cut = true;
+					break;
+				}
+				if (start > reported && visitor.skipped(region.reset(window, reported, start))) {
+					return true;
+				}
+				if (visitor.visit(decoder.decode(line.reset(window, start, end)))) {
+					return true;
+				}
+				lineStart = end + ((end + 1 < length && window.get(end) == '\r' && window.get(end + 1) == '\n') ? 2 : 1);
+				searchFrom = lineStart;
+				reported = Math.min(lineStart, length);
+			}
+
+			if (last) {
+				return reported < length && visitor.skipped(region.reset(window, reported, length));
+			}
+			if (!cut) {
+				lineStart = lastLineStart(window, lineStart, length);
+			}
+			if (lineStart > reported && visitor.skipped(region.reset(window, reported, lineStart))) {
+				return true;
+			}
+			if (lineStart > 0) {
+				position += lineStart;
+			} else if (size < MAX_WINDOW_SIZE) {
+				size = Math.min(size * 2, MAX_WINDOW_SIZE);
+			} else {
+				if (filter.indexIn(window, 0, length) >= 0
+						&& visitor.visit(decoder.decode(line.reset(window, 0, length)))) {
+					return true;
+				}
+				position += length;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The start of the last line in the window, which may be incomplete.
+	 */
+	private static int lastLineStart(MappedByteBuffer window, int from, int length) {
+		for (int i = length - 1; i >= from; i--) {
+			byte b = window.get(i);
+			// A final '\r' may be the first half of "\r\n".
+			if (b == '\n' || (b == '\r' && i + 1 < length)) {
+				return i + 1;
+			}
+		}
+		return from;
+	}
+
+	private static boolean isLineBreak(byte b) {
+		return b == '\n' || b == '\r';
+	}
+}
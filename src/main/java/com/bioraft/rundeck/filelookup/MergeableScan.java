@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+/**
+ * A line visitor whose results can be built separately for each part of a file
+ * and merged back in file order.
+ *
+ * @param <S> The implementing type, so merge and copy stay type safe.
+ */
+interface MergeableScan<S extends MergeableScan<S>> extends LineVisitor {
+
+	/**
+	 * @return An empty scan with the same settings, used for a part of the file.
+	 */
+	S copy();
+
+	/**
+	 * @return The literal every line of interest must contain, or null if there is none.
+	 */
+	LiteralFilter filter();
+
+	/**
+	 * Adds the results of a scan over a later part of the file.
+	 */
+	void merge(S later);
+
+	/**
+	 * @return True once nothing later in the file can change the results.
+	 */
+	boolean isComplete();
+}
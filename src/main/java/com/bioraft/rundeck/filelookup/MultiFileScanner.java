@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs one lookup over every file a path names, on a bounded pool of threads.
+ *
+ * A path may be a single file, a directory (every regular file directly in
+ * it) or a glob such as /var/log/app/*.log. Files are searched concurrently,
+ * but results are handed to the accumulator strictly in the order the files
+ * were given, so the outcome is the same as searching them one after the
+ * other. Once the accumulator reports that the result is decided, searches
+ * still queued are cancelled and those in progress are interrupted.
+ */
+class MultiFileScanner {
+
+	static final int DEFAULT_THREADS = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+	private static final String GLOB_CHARACTERS = "*?[{";
+
+	interface FileSearch<T> {
+		T search(Path file) throws IOException;
+	}
+
+	interface Accumulator<T> {
+		/**
+		 * @return True once the result is decided and later files need not be read.
+		 */
+		boolean add(T result);
+	}
+
+	private final int threads;
+
+	MultiFileScanner(int threads) {
+		this.threads = Math.max(threads, 1);
+	}
+
+	/**
+	 * @return Whether the path holds glob characters rather than naming one file.
+	 */
+	static boolean isGlob(String path) {
+		return firstGlobCharacter(path) < path.length();
+	}
+
+	/**
+	 * Lists the files a path names, in sorted path order.
+	 *
+	 * A plain path that is not a directory is returned as is, whether or not it
+	 * exists, so that reading it reports the usual errors. So is an existing
+	 * file whose name merely contains glob characters, such as app[1].log.
+	 * Directories are not descended into unless a glob asks for it with **.
+	 *
+	 * @throws FileNotFoundException When the path is blank, or a directory or
+	 *                               glob matches no files.
+	 */
+	static List<Path> expand(String path) throws IOException {
+		if (path.trim().isEmpty()) {
+			throw new FileNotFoundException("No file path given");
+		}
+		Path base;
+		String glob;
+		if (isGlob(path) && !Files.isRegularFile(Paths.get(path))) {
+			int slash = path.lastIndexOf('/', firstGlobCharacter(path));
+			base = slash < 0 ? Paths.get("") : Paths.get(slash == 0 ? "/" : path.substring(0, slash));
+			glob = path.substring(slash + 1);
+		} else if (Files.isDirectory(Paths.get(path))) {
+			base = Paths.get(path);
+			glob = "*";
+		} else {
+			return Collections.singletonList(Paths.get(path));
+		}
+
+		int depth = glob.contains("**") ? Integer.MAX_VALUE : glob.split("/").length;
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		List<Path> files;
+		try (Stream<Path> walk = Files.walk(base, depth)) {
+			files = walk.filter(file -> Files.isRegularFile(file) && matcher.matches(base.relativize(file)))
+					.sorted().collect(Collectors.toList());
+		}
+		if (files.isEmpty()) {
+			throw new FileNotFoundException("No files match '" + path + "'");
+		}
+		return files;
+	}
+
+	private static int firstGlobCharacter(String path) {
+		int first = path.length();
+		for (char c : GLOB_CHARACTERS.toCharArray()) {
+			int index = path.indexOf(c);
+			if (index >= 0 && index < first) {
+				first = index;
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Searches the files and feeds the results to the accumulator in file order.
+	 *
+	 * A failure is reported only if it happens before the result is decided;
+	 * files cancelled after that point do not matter.
+	 */
+	<T> void scan(List<Path> files, FileSearch<T> search, Accumulator<T> accumulator) throws IOException {
+		if (threads == 1 || files.size() == 1) {
+			for (Path file : files) {
+				if (accumulator.add(search.search(file))) {
+					return;
+				}
+			}
+			return;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, files.size()), runnable -> {
+			Thread thread = new Thread(runnable, "file-lookup-scan");
+			thread.setDaemon(true);
+			return thread;
+		});
+		List<Future<T>> futures = new ArrayList<>(files.size());
+		try {
+			for (Path file : files) {
+				futures.add(pool.submit(() -> search.search(file)));
+			}
+			for (Future<T> future : futures) {
+				if (accumulator.add(await(future))) {
+					return;
+				}
+			}
+		} finally {
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+			pool.shutdownNow();
+		}
+	}
+
+	private static <T> T await(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while scanning files");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs several pattern scans over the same lines, so that one read of a file
+ * serves every pattern.
+ *
+ * Each line goes to the patterns that are still looking for a match; a pattern
+ * that stops at its first match drops out once it has one. The scan as a whole
+ * stops when every pattern has dropped out, which never happens while a
+ * two-capture pattern is present, since those read to the end of the file.
+ * A scan given a budget also stops, without visiting the line, once the
+ * budget has run out; lines an engine passes over count against it too.
+ */
+class MultiPatternScan implements MergeableScan<MultiPatternScan> {
+
+	private final List<PatternScan> scans;
+
+	/**
+	 * Shared with every copy, so that the chunks and files of one lookup draw on
+	 * the same budget; null for no limit.
+	 */
+	private final LookupBudget budget;
+
+	private long lines;
+
+	MultiPatternScan(List<PatternScan> scans) {
+		this(scans, null);
+	}
+
+	MultiPatternScan(List<PatternScan> scans, LookupBudget budget) {
+		this.scans = Collections.unmodifiableList(new ArrayList<>(scans));
+		this.budget = budget;
+	}
+
+	@Override
+	public boolean visit(CharSequence line) {
+		if (budget != null && !budget.chargeLine()) {
+			return true;
+		}
+		lines++;
+		boolean complete = true;
+		for (PatternScan scan : scans) {
+			if (!scan.isComplete()) {
+				scan.visit(line);
+				complete &= scan.isComplete();
+			}
+		}
+		return complete;
+	}
+
+	@Override
+	public boolean skipped(CharSequence region) {
+		return budget != null && !budget.chargeSkipped(region);
+	}
+
+	@Override
+	public MultiPatternScan copy() {
+		List<PatternScan> copies = new ArrayList<>(scans.size());
+		for (PatternScan scan : scans) {
+			copies.add(scan.copy());
+		}
+		return new MultiPatternScan(copies, budget);
+	}
+
+	/**
+	 * @return True if the scan can end before the end of the file, which needs
+	 *         every pattern to stop at its first match.
+	 */
+	boolean stopsEarly() {
+		for (PatternScan scan : scans) {
+			if (!scan.stopsAtFirstMatch()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Only a lone pattern can share its literal; with several patterns a line
+	 * may be of interest to any of them, so each applies its own filter.
+	 */
+	@Override
+	public LiteralFilter filter() {
+		return scans.size() == 1 ? scans.get(0).filter() : null;
+	}
+
+	@Override
+	public void merge(MultiPatternScan later) {
+		lines += later.lines;
+		for (int i = 0; i < scans.size(); i++) {
+			scans.get(i).merge(later.scans.get(i));
+		}
+	}
+
+	@Override
+	public boolean isComplete() {
+		for (PatternScan scan : scans) {
+			if (!scan.isComplete()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Number of lines visited, including merged scans.
+	 */
+	long lines() {
+		return lines;
+	}
+
+	/**
+	 * @return Number of lines matched, summed over the patterns.
+	 */
+	long matches() {
+		long matches = 0;
+		for (PatternScan scan : scans) {
+			matches += scan.matches();
+		}
+		return matches;
+	}
+
+	/**
+	 * @return The scans for each pattern, in the order they were given.
+	 */
+	List<PatternScan> scans() {
+		return scans;
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.common.INodeEntry;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs a command on a node and streams back what it writes.
+ *
+ * Node scans go through this so that they can be tried without Rundeck:
+ * FrameworkCommandRunner dispatches through the node's execution service, and
+ * LocalCommandRunner stands in for it by running the command on this machine.
+ */
+interface NodeCommandRunner {
+
+	/**
+	 * Runs the command and hands each line of its standard output to the
+	 * visitor until the visitor returns true or the output ends.
+	 *
+	 * @return The exit code of the command, or 0 when the visitor stopped it.
+	 * @throws IOException When the command could not be run.
+	 */
+	int run(INodeEntry node, List<String> command, LineVisitor output) throws IOException;
+}
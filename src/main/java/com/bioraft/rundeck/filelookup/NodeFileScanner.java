@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.common.INodeEntry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Scans a file that lives on a node by filtering it there and matching only
+ * the lines sent back.
+ *
+ * The node runs a fixed-string grep for the literal that every match of each
+ * pattern must contain, as found by LiteralFilter, so only lines that may match
+ * cross the network. The patterns themselves run here, which keeps Java regular
+ * expression syntax whatever grep the node has. When a pattern has no such
+ * literal, any line may match and the file is sent whole with cat.
+ *
+ * Lines are visited as they arrive and reading stops once the visitor is
+ * done. A scan from the end keeps the lines sent back and visits them last
+ * line first, so it needs a literal in every pattern; without one the whole
+ * file would be held here.
+ */
+class NodeFileScanner {
+
+	/**
+	 * Exit code of grep when no line was selected.
+	 */
+	static final int GREP_NO_MATCH = 1;
+
+	private final NodeCommandRunner runner;
+
+	private final INodeEntry node;
+
+	NodeFileScanner(NodeCommandRunner runner, INodeEntry node) {
+		this.runner = runner;
+		this.node = node;
+	}
+
+	/**
+	 * @return True if every pattern has a literal for grep, so that only the
+	 *         lines that may match are sent back.
+	 */
+	static boolean filtersOnNode(List<Pattern> patterns) {
+		for (Pattern pattern : patterns) {
+			if (LiteralFilter.forPattern(pattern) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The command that sends back the lines of the file that may match
+	 *         one of the patterns.
+	 */
+	static List<String> command(String path, List<Pattern> patterns) {
+		List<String> command = new ArrayList<>(Arrays.asList("grep", "-a", "-h", "-F"));
+		for (Pattern pattern : patterns) {
+			LiteralFilter filter = LiteralFilter.forPattern(pattern);
+			if (filter == null) {
+				return Arrays.asList("cat", "--", path);
+			}
+			command.add("-e");
+			command.add(filter.literal());
+		}
+		command.add("--");
+		command.add(path);
+		return command;
+	}
+
+	/**
+	 * @return The number of bytes sent back, counting one per char and line break.
+	 * @throws IOException When the command could not be run or failed.
+	 * @throws IllegalArgumentException When scanning from the end with a pattern
+	 *                                  that has no literal.
+	 */
+	long scan(String path, List<Pattern> patterns, LineVisitor visitor, boolean fromEnd) throws IOException {
+		if (fromEnd && !filtersOnNode(patterns)) {
+			throw new IllegalArgumentException("Scanning from the end on the node needs a literal in every pattern");
+		}
+		List<String> command = command(path, patterns);
+		List<String> lines = new ArrayList<>();
+		long[] received = new long[1];
+		int exit = runner.run(node, command, line -> {
+			received[0] += line.length() + 1;
+			if (fromEnd) {
+				lines.add(line.toString());
+				return false;
+			}
+			return visitor.visit(line);
+		});
+		if (exit != 0 && !(exit == GREP_NO_MATCH && "grep".equals(command.get(0)))) {
+			throw new IOException(command.get(0) + " exited with " + exit + " on node " + node.getNodename());
+		}
+		for (int i = lines.size() - 1; i >= 0; i--) {
+			if (visitor.visit(lines.get(i))) {
+				break;
+			}
+		}
+		return received[0];
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scans a large file on several threads.
+ *
+ * The file is split in halves recursively, each split moved forward to the
+ * next line start, until the pieces are no larger than the chunk size. Each
+ * chunk is scanned through a memory mapping into its own copy of the scan, and the
+ * results are merged left to right, so the outcome is the same as a scan from
+ * the top of the file: the first match wins for single-capture patterns and
+ * the first value of each name wins for two-capture patterns.
+ *
+ * Once a chunk completes the scan, for instance when a single-capture pattern
+ * matches, chunks that start after it are skipped and chunks in progress past
+ * it stop early.
+ */
+class ParallelFileScanner {
+
+	static final long DEFAULT_CHUNK_SIZE = 16L * 1024 * 1024;
+
+	private final int parallelism;
+
+	private final long chunkSize;
+
+	ParallelFileScanner(int parallelism) {
+		this(parallelism, DEFAULT_CHUNK_SIZE);
+	}
+
+	ParallelFileScanner(int parallelism, long chunkSize) {
+		this.parallelism = parallelism;
+		this.chunkSize = Math.max(chunkSize, 1);
+	}
+
+	/**
+	 * Scans the file and merges all chunk results into the given scan.
+	 */
+	<S extends MergeableScan<S>> void scan(Path path, S scan) throws IOException {
+		scan(path, Long.MAX_VALUE, scan);
+	}
+
+	/**
+	 * Scans the start of the file up to the first line start at or after the
+	 * limit, and merges all chunk results into the given scan.
+	 *
+	 * @return The number of bytes scanned.
+	 */
+	<S extends MergeableScan<S>> long scan(Path path, long limit, S scan) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long to = limit >= size ? size : nextLineStart(channel, limit, size);
+			scan(channel, 0, to, scan);
+			return to;
+		}
+	}
+
+	/**
+	 * Scans the region between two line starts, and merges all chunk results
+	 * into the given scan.
+	 */
+	<S extends MergeableScan<S>> void scan(FileChannel channel, long from, long to, S scan) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			ChunkTask<S> task = new ChunkTask<>(channel, scan, from, to, new AtomicLong(Long.MAX_VALUE));
+			scan.merge(pool.invoke(task));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return The offset of the first line that starts at or after position.
+	 *         Lines end as they do for MappedFileScanner: at "\n", "\r\n" or a
+	 *         lone "\r".
+	 */
+	static long nextLineStart(FileChannel channel, long position, long limit) throws IOException {
+		if (position == 0) {
+			return 0;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long offset = position - 1;
+		while (offset < limit) {
+			buffer.clear();
+			int read = channel.read(buffer, offset);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				byte b = buffer.get(i);
+				if (b == '\n') {
+					return Math.min(offset + i + 1, limit);
+				}
+				if (b == '\r') {
+					long next = offset + i + 1;
+					boolean crlf = i + 1 < read ? buffer.get(i + 1) == '\n' : isLineFeed(channel, next);
+					return Math.min(crlf ? next + 1 : next, limit);
+				}
+			}
+			offset += read;
+		}
+		return limit;
+	}
+
+	private static boolean isLineFeed(FileChannel channel, long position) throws IOException {
+		ByteBuffer next = ByteBuffer.allocate(1);
+		return channel.read(next, position) == 1 && next.get(0) == '\n';
+	}
+
+	private class ChunkTask<S extends MergeableScan<S>> extends RecursiveTask<S> {
+		private static final long serialVersionUID = 1L;
+
+		private final transient FileChannel channel;
+		private final transient S prototype;
+		private final long from;
+		private final long to;
+		private final AtomicLong firstMatch;
+
+		ChunkTask(FileChannel channel, S prototype, long from, long to, AtomicLong firstMatch) {
+			this.channel = channel;
+			this.prototype = prototype;
+			this.from = from;
+			this.to = to;
+			this.firstMatch = firstMatch;
+		}
+
+		@Override
+		protected S compute() {
+			try {
+				if (to - from > chunkSize) {
+					long middle = nextLineStart(channel, from + (to - from) / 2, to);
+					if (middle > from && middle < to) {
+						ChunkTask<S> left = new ChunkTask<>(channel, prototype, from, middle, firstMatch);
+						ChunkTask<S> right = new ChunkTask<>(channel, prototype, middle, to, firstMatch);
+						right.fork();
+						S result = left.compute();
+						result.merge(right.join());
+						return result;
+					}
+				}
+				return scanChunk();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private S scanChunk() throws IOException {
+			S chunk = prototype.copy();
+			if (from > firstMatch.get()) {
+				return chunk;
+			}
+			LineVisitor visitor = new LineVisitor() {
+				@Override
+				public boolean visit(CharSequence line) {
+					return chunk.visit(line) || from > firstMatch.get();
+				}
+
+				@Override
+				public boolean skipped(CharSequence region) {
+					return chunk.skipped(region) || from > firstMatch.get();
+				}
+			};
+			new MappedFileScanner().scan(channel, from, to, visitor, chunk.filter());
+			if (chunk.isComplete()) {
+				firstMatch.accumulateAndGet(from, Math::min);
+			}
+			return chunk;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded LRU cache of compiled patterns shared by all scan steps.
+ *
+ * A node step fanned out over many nodes compiles the same expression once per
+ * node, so compiled patterns are kept by expression and flags. Pattern objects
+ * are immutable and safe to share between threads.
+ */
+class PatternCache {
+
+	static final int DEFAULT_CAPACITY = 256;
+
+	private static final PatternCache SHARED = new PatternCache(DEFAULT_CAPACITY);
+
+	private final Map<Key, Pattern> patterns;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	PatternCache(final int capacity) {
+		patterns = new LinkedHashMap<Key, Pattern>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Pattern> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	static PatternCache shared() {
+		return SHARED;
+	}
+
+	Pattern compile(String regex) {
+		return compile(regex, 0);
+	}
+
+	/**
+	 * Returns the compiled pattern, compiling it on first use.
+	 *
+	 * Compilation happens outside the lock so a slow expression does not block
+	 * lookups of others; if two threads race, the first one stored wins.
+	 *
+	 * @throws java.util.regex.PatternSyntaxException When the expression is invalid.
+	 */
+	Pattern compile(String regex, int flags) {
+		Key key = new Key(regex, flags);
+		synchronized (patterns) {
+			Pattern pattern = patterns.get(key);
+			if (pattern != null) {
+				hits.incrementAndGet();
+				return pattern;
+			}
+		}
+		misses.incrementAndGet();
+		Pattern compiled = Pattern.compile(regex, flags);
+		synchronized (patterns) {
+			Pattern existing = patterns.putIfAbsent(key, compiled);
+			return existing == null ? compiled : existing;
+		}
+	}
+
+	long hits() {
+		return hits.get();
+	}
+
+	long misses() {
+		return misses.get();
+	}
+
+	int size() {
+		synchronized (patterns) {
+			return patterns.size();
+		}
+	}
+
+	private static final class Key {
+		private final String regex;
+		private final int flags;
+
+		Key(String regex, int flags) {
+			this.regex = regex;
+			this.flags = flags;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return flags == other.flags && regex.equals(other.regex);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(regex, flags);
+		}
+	}
+}
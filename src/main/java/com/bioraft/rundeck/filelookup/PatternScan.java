@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the values one pattern captures from the lines of a file.
+ *
+ * With one capture group, or none, the scan is complete at the first match
+ * and the value is stored under the variable name. With two capture groups
+ * the first names the variable and the second is its value; scanning runs to
+ * the end and the first value seen for each name is kept.
+ *
+ * Values are collected rather than written straight to the step output, so
+ * scans of separate parts of a file can be merged in file order. For the same
+ * reason a scan asked to record its matched lines, for debug logging, keeps
+ * them until it is merged and logged.
+ */
+class PatternScan implements MergeableScan<PatternScan> {
+
+	private final Pattern pattern;
+
+	private final String name;
+
+	private final LiteralFilter filter;
+
+	private final int groupCount;
+
+	/**
+	 * Reset for every line, so matching allocates nothing until a line matches.
+	 * Each copy has its own, so a scan is confined to one thread at a time.
+	 */
+	private final Matcher matcher;
+
+	private final Map<String, String> values = new LinkedHashMap<>();
+
+	/**
+	 * Lines that matched, in file order; null unless recording.
+	 */
+	private List<String> matchedLines;
+
+	private boolean complete;
+
+	private long matches;
+
+	PatternScan(Pattern pattern, String name) {
+		this(pattern, name, LiteralFilter.forPattern(pattern));
+	}
+
+	/**
+	 * @param filter Rejects lines before the pattern runs; may be null.
+	 */
+	PatternScan(Pattern pattern, String name, LiteralFilter filter) {
+		this.pattern = pattern;
+		this.name = name;
+		this.filter = filter;
+		this.matcher = pattern.matcher("");
+		this.groupCount = matcher.groupCount();
+	}
+
+	@Override
+	public PatternScan copy() {
+		PatternScan copy = new PatternScan(pattern, name, filter);
+		if (matchedLines != null) {
+			copy.recordMatchedLines();
+		}
+		return copy;
+	}
+
+	/**
+	 * Keeps every line that matches from now on, including in copies.
+	 */
+	void recordMatchedLines() {
+		matchedLines = new ArrayList<>();
+	}
+
+	@Override
+	public LiteralFilter filter() {
+		return filter;
+	}
+
+	@Override
+	public boolean visit(CharSequence line) {
+		if (filter != null && !filter.containedIn(line)) {
+			return false;
+		}
+		Matcher match = matcher.reset(line);
+		if (!match.find()) {
+			return false;
+		}
+		matches++;
+		if (matchedLines != null) {
+			matchedLines.add(line.toString());
+		}
+		if (groupCount == 1) {
+			values.put(name, match.group(1));
+			complete = true;
+		} else if (groupCount > 1) {
+			// Take first value and do not overwrite, even though scanning proceeds
+			// through the rest of the file to find other matches to the pattern.
+			String key = match.group(1);
+			if (!values.containsKey(key)) {
+				values.put(key, match.group(2));
+			}
+		} else {
+			values.put(name, match.group(0));
+			complete = true;
+		}
+		return complete;
+	}
+
+	@Override
+	public void merge(PatternScan later) {
+		matches += later.matches;
+		if (complete) {
+			return;
+		}
+		if (matchedLines != null && later.matchedLines != null) {
+			matchedLines.addAll(later.matchedLines);
+		}
+		for (Map.Entry<String, String> entry : later.values.entrySet()) {
+			if (!values.containsKey(entry.getKey())) {
+				values.put(entry.getKey(), entry.getValue());
+			}
+		}
+		complete = later.complete;
+	}
+
+	/**
+	 * Takes on the results of an earlier scan, such as one kept in a checkpoint.
+	 */
+	void restore(Map<String, String> previous, boolean wasComplete) {
+		values.clear();
+		values.putAll(previous);
+		complete = wasComplete;
+	}
+
+	/**
+	 * @return True once a pattern that stops at its first match has matched.
+	 */
+	@Override
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return True if the pattern stops at its first match; false if it has two
+	 *         capture groups and reads to the end of the file.
+	 */
+	boolean stopsAtFirstMatch() {
+		return groupCount < 2;
+	}
+
+	/**
+	 * @return Number of lines the pattern matched, including merged scans.
+	 */
+	long matches() {
+		return matches;
+	}
+
+	/**
+	 * @return Lines that matched, in file order; empty unless recording.
+	 */
+	List<String> matchedLines() {
+		return matchedLines == null ? Collections.emptyList() : Collections.unmodifiableList(matchedLines);
+	}
+
+	/**
+	 * @return Captured values by variable name, in the order they were found.
+	 */
+	Map<String, String> values() {
+		return Collections.unmodifiableMap(values);
+	}
+}
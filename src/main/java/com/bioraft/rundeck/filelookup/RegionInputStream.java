@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the bytes between two offsets of a file channel, so that a region
+ * can be read through a reader like a whole file.
+ *
+ * Reads are positional and leave the channel's position alone. Closing the
+ * stream does not close the channel.
+ */
+final class RegionInputStream extends InputStream {
+
+	private final FileChannel channel;
+
+	private final long to;
+
+	private long position;
+
+	RegionInputStream(FileChannel channel, long from, long to) {
+		this.channel = channel;
+		this.position = from;
+		this.to = to;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] one = new byte[1];
+		return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (position >= to) {
+			return -1;
+		}
+		int wanted = (int) Math.min(length, to - position);
+		int read = channel.read(ByteBuffer.wrap(bytes, offset, wanted), position);
+		if (read < 0) {
+			return -1;
+		}
+		position += read;
+		return read;
+	}
+}
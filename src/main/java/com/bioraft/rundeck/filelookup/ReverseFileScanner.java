@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file backwards from the end and passes its lines to a visitor last
+ * line first.
+ *
+ * The file is read in fixed-size blocks starting at EOF. Each block is joined
+ * to the unfinished line carried over from the block after it, split at line
+ * breaks from the end, and the piece before its first break is carried on to
+ * the block before it. Reading stops as soon as the visitor asks it to, so
+ * finding the last match in an append-only log costs only the bytes after it.
+ *
+ * Lines end at "\n", "\r" or "\r\n", as with BufferedReader.readLine(), and a
+ * break at the very end of the file does not start an extra empty line. Lines
+ * are decoded through LineDecoder, with the reader's charset, before the
+ * visitor sees them.
+ */
+class ReverseFileScanner {
+
+	static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	private final int blockSize;
+
+	private final LineDecoder decoder;
+
+	ReverseFileScanner() {
+		this(DEFAULT_BLOCK_SIZE);
+	}
+
+	ReverseFileScanner(int blockSize) {
+		this(blockSize, LineDecoder.platform());
+	}
+
+	ReverseFileScanner(int blockSize, LineDecoder decoder) {
+		this.blockSize = Math.max(blockSize, 1);
+		this.decoder = decoder;
+	}
+
+	void scan(Path path, LineVisitor visitor) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			scan(channel, 0, channel.size(), visitor);
+		}
+	}
+
+	/**
+	 * @return The offset just past the last complete line, or 0 if there is none.
+	 *         A "\r" in the last byte does not count, as a "\n" may follow it.
+	 */
+	static long completeLinesEnd(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long size = channel.size();
+		long position = size;
+		while (position > 0) {
+			int length = (int) Math.min(buffer.capacity(), position);
+			position -= length;
+			buffer.clear().limit(length);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					throw new IOException("File shrank while being read");
+				}
+			}
+			for (int i = length - 1; i >= 0; i--) {
+				byte b = buffer.get(i);
+				if (b == '\n' || (b == '\r' && position + i < size - 1)) {
+					return position + i + 1;
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Scans the lines between two offsets, the lower one a line start.
+	 */
+	void scan(FileChannel channel, long from, long to, LineVisitor visitor) throws IOException {
+		ByteCharSequence line = new ByteCharSequence();
+		byte[] carry = new byte[0];
+		boolean lastLine = true;
+		long position = to;
+		while (position > from) {
+			int length = (int) Math.min(blockSize, position - from);
+			position -= length;
+			byte[] bytes = new byte[length + carry.length];
+			ByteBuffer block = ByteBuffer.wrap(bytes, 0, length);
+			while (block.hasRemaining()) {
+				if (channel.read(block, position + block.position()) < 0) {
+					throw new IOException("File shrank while being read");
+				}
+			}
+			System.arraycopy(carry, 0, bytes, length, carry.length);
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+			int end = bytes.length;
+			for (int i = bytes.length - 1; i >= 0; i--) {
+				byte b = bytes[i];
+				if (b != '\n' && b != '\r') {
+					continue;
+				}
+				if (b == '\n' && i == 0 && position > from) {
+					// A "\r" for this break may end the previous block.
+					break;
+				}
+				if (!(lastLine && i + 1 == end) && visitor.visit(decoder.decode(line.reset(buffer, i + 1, end)))) {
+					return;
+				}
+				lastLine = false;
+				end = b == '\n' && i > 0 && bytes[i - 1] == '\r' ? --i : i;
+			}
+			carry = new byte[end];
+			System.arraycopy(bytes, 0, carry, 0, end);
+		}
+		if (!(lastLine && carry.length == 0)) {
+			visitor.visit(decoder.decode(line.reset(ByteBuffer.wrap(carry), 0, carry.length)));
+		}
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Where an incremental scan of a growing file left off.
+ *
+ * A checkpoint records the identity of the file when it was last scanned
+ * (file key, which is the device and inode on Unix, plus size and modified
+ * time), the offset just past the last complete line read, and the values
+ * each pattern had found by then. It is kept as a small properties file named
+ * by a digest of the file's path and the scan targets, so different lookups
+ * in the same file keep separate checkpoints.
+ *
+ * State files go in the directory named by the system property
+ * com.bioraft.rundeck.filelookup.stateDir, or in rundeck-file-lookup under
+ * java.io.tmpdir when it is not set. As the values found may be secrets, the
+ * directory is created readable by its owner only, as is each state file,
+ * where the file system supports POSIX permissions. A key or value left unset
+ * by an optional group is left out, and restored as unset.
+ */
+final class ScanCheckpoint {
+
+	static final String STATE_DIR_PROPERTY = "com.bioraft.rundeck.filelookup.stateDir";
+
+	private static final String FILE_KEY = "fileKey";
+	private static final String SIZE = "size";
+	private static final String MODIFIED = "modified";
+	private static final String OFFSET = "offset";
+	private static final String COMPLETE = ".complete";
+	private static final String VALUE = ".value.";
+
+	private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+	private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+
+	private final String fileKey;
+
+	private final long size;
+
+	private final long modified;
+
+	private final long offset;
+
+	private final Properties values;
+
+	private ScanCheckpoint(String fileKey, long size, long modified, long offset, Properties values) {
+		this.fileKey = fileKey;
+		this.size = size;
+		this.modified = modified;
+		this.offset = offset;
+		this.values = values;
+	}
+
+	/**
+	 * @return The directory state files are kept in.
+	 */
+	static Path defaultDirectory() {
+		String configured = System.getProperty(STATE_DIR_PROPERTY);
+		if (configured != null && !configured.trim().isEmpty()) {
+			return Paths.get(configured.trim());
+		}
+		return Paths.get(System.getProperty("java.io.tmpdir"), "rundeck-file-lookup");
+	}
+
+	/**
+	 * @return The state file for one lookup in one file.
+	 */
+	static Path stateFile(Path directory, Path file, List<ScanTarget> targets, boolean fromEnd) throws IOException {
+		StringBuilder identity = new StringBuilder(file.toRealPath().toString()).append('\n').append(fromEnd);
+		for (ScanTarget target : targets) {
+			identity.append('\n').append(target.getGroup()).append('\n').append(target.getName()).append('\n')
+					.append(target.getRegex());
+		}
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(identity.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder("scan-");
+			for (int i = 0; i < 16; i++) {
+				name.append(String.format("%02x", digest[i]));
+			}
+			return directory.resolve(name.append(".properties").toString());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * @return The stored checkpoint, or null if there is none or it cannot be read.
+	 */
+	static ScanCheckpoint load(Path stateFile) {
+		if (!Files.isRegularFile(stateFile)) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(stateFile)) {
+			properties.load(in);
+			return new ScanCheckpoint(properties.getProperty(FILE_KEY, ""),
+					Long.parseLong(properties.getProperty(SIZE)), Long.parseLong(properties.getProperty(MODIFIED)),
+					Long.parseLong(properties.getProperty(OFFSET)), properties);
+		} catch (IOException | RuntimeException e) {
+			// A damaged checkpoint only costs a full scan.
+			return null;
+		}
+	}
+
+	/**
+	 * Whether the file is still the one scanned, with at most lines appended.
+	 *
+	 * A different file key means the path now names another file, as after
+	 * rotation; a size below the offset means it was truncated; the same size
+	 * with a new modified time means it was rewritten in place.
+	 */
+	boolean continues(BasicFileAttributes attributes) {
+		String currentKey = fileKey(attributes);
+		if (!fileKey.isEmpty() && !currentKey.isEmpty() && !fileKey.equals(currentKey)) {
+			return false;
+		}
+		if (attributes.size() < offset || attributes.size() < size) {
+			return false;
+		}
+		return attributes.size() != size || attributes.lastModifiedTime().toMillis() == modified;
+	}
+
+	long offset() {
+		return offset;
+	}
+
+	/**
+	 * Puts the values found before the checkpoint back into a fresh scan.
+	 */
+	void restore(MultiPatternScan scan) {
+		List<PatternScan> scans = scan.scans();
+		for (int i = 0; i < scans.size(); i++) {
+			Map<String, String> found = new LinkedHashMap<>();
+			String prefix = i + VALUE;
+			int count = Integer.parseInt(values.getProperty(i + ".count", "0"));
+			for (int j = 0; j < count; j++) {
+				found.put(values.getProperty(prefix + j + ".key"), values.getProperty(prefix + j));
+			}
+			scans.get(i).restore(found, Boolean.parseBoolean(values.getProperty(i + COMPLETE)));
+		}
+	}
+
+	/**
+	 * Writes the checkpoint, replacing the previous one in a single move.
+	 */
+	static void store(Path stateFile, BasicFileAttributes attributes, long offset, MultiPatternScan scan)
+			throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(FILE_KEY, fileKey(attributes));
+		properties.setProperty(SIZE, Long.toString(attributes.size()));
+		properties.setProperty(MODIFIED, Long.toString(attributes.lastModifiedTime().toMillis()));
+		properties.setProperty(OFFSET, Long.toString(offset));
+		List<PatternScan> scans = scan.scans();
+		for (int i = 0; i < scans.size(); i++) {
+			properties.setProperty(i + COMPLETE, Boolean.toString(scans.get(i).isComplete()));
+			int j = 0;
+			for (Map.Entry<String, String> entry : scans.get(i).values().entrySet()) {
+				if (entry.getKey() != null) {
+					properties.setProperty(i + VALUE + j + ".key", entry.getKey());
+				}
+				if (entry.getValue() != null) {
+					properties.setProperty(i + VALUE + j, entry.getValue());
+				}
+				j++;
+			}
+			properties.setProperty(i + ".count", Integer.toString(j));
+		}
+
+		Path directory = stateFile.getParent();
+		Path temporary;
+		if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+			temporary = Files.createTempFile(directory, "scan-", ".tmp", PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE));
+		} else {
+			Files.createDirectories(directory);
+			temporary = Files.createTempFile(directory, "scan-", ".tmp");
+		}
+		try {
+			try (OutputStream out = Files.newOutputStream(temporary)) {
+				properties.store(out, "File lookup scan checkpoint");
+			}
+			try {
+				Files.move(temporary, stateFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, stateFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private static String fileKey(BasicFileAttributes attributes) {
+		Object key = attributes.fileKey();
+		return key == null ? "" : key.toString();
+	}
+}
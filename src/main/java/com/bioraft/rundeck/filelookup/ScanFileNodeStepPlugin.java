@@ -16,18 +16,26 @@
 package com.bioraft.rundeck.filelookup;
 
 import com.dtolabs.rundeck.core.common.INodeEntry;
+import com.dtolabs.rundeck.core.execution.workflow.steps.StepFailureReason;
 import com.dtolabs.rundeck.core.execution.workflow.steps.node.NodeStepException;
 import com.dtolabs.rundeck.core.plugins.Plugin;
 import com.dtolabs.rundeck.plugins.ServiceNameConstants;
 import com.dtolabs.rundeck.plugins.descriptions.PluginDescription;
 import com.dtolabs.rundeck.plugins.descriptions.PluginProperty;
+import com.dtolabs.rundeck.plugins.descriptions.RenderingOption;
+import com.dtolabs.rundeck.plugins.descriptions.SelectValues;
 import com.dtolabs.rundeck.plugins.step.NodeStepPlugin;
 import com.dtolabs.rundeck.plugins.step.PluginStepContext;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import static com.bioraft.rundeck.filelookup.Constants.*;
+import static com.dtolabs.rundeck.core.plugins.configuration.StringRenderingConstants.DISPLAY_TYPE_KEY;
 import static org.apache.commons.lang.StringUtils.defaultString;
 
 /**
@@ -41,7 +49,8 @@ import static org.apache.commons.lang.StringUtils.defaultString;
  * option. When two capture fields are given, the variable name will taken from
  * the first capture field and the value from the second.
  * 
- * In cases where there are multiple matches found, the first is returned.
+ * In cases where there are multiple matches found, the first is returned, or
+ * the last when the file is scanned from the end.
  *
  * @author Karl DeBisschop <kdebisschop@gmail.com>
  * @since 2019-12-11
@@ -60,27 +69,123 @@ public class ScanFileNodeStepPlugin implements NodeStepPlugin {
 	@PluginProperty(title = OPT_NAME, description = OPT_NAME_DESCRIPTION)
 	private String name;
 
-	@PluginProperty(title = OPT_PATTERN, description = OPT_PATTERN_DESCRIPTION, required = true)
+	@PluginProperty(title = OPT_PATTERN, description = OPT_PATTERN_DESCRIPTION)
 	private String regex;
 
+	@PluginProperty(title = OPT_PATTERNS, description = OPT_PATTERNS_DESCRIPTION)
+	@RenderingOption(key = DISPLAY_TYPE_KEY, value = "MULTI_LINE")
+	private String patterns;
+
 	@PluginProperty(title = OPT_GLOBAL, description = OPT_GLOBAL_DESCRIPTION, required = true, defaultValue = "false")
 	private boolean elevateToGlobal;
 
+	@PluginProperty(title = OPT_FROM_END, description = OPT_FROM_END_DESCRIPTION, defaultValue = "false")
+	private boolean fromEnd;
+
+	@PluginProperty(title = OPT_INCREMENTAL, description = OPT_INCREMENTAL_DESCRIPTION, defaultValue = "false")
+	private boolean incremental;
+
+	@PluginProperty(title = OPT_SCAN_ON_NODE, description = OPT_SCAN_ON_NODE_DESCRIPTION, defaultValue = "false")
+	private boolean scanOnNode;
+
+	@PluginProperty(title = OPT_PARALLELISM, description = OPT_PARALLELISM_DESCRIPTION, defaultValue = "1")
+	private int parallelism;
+
+	@PluginProperty(title = OPT_ENGINE, description = OPT_SCAN_ENGINE_DESCRIPTION, defaultValue = ENGINE_AUTO)
+	@SelectValues(values = { ENGINE_AUTO, ENGINE_READER, ENGINE_MAPPED, ENGINE_PARALLEL })
+	private String engine;
+
+	@PluginProperty(title = OPT_MAX_BYTES, description = OPT_MAX_BYTES_DESCRIPTION, defaultValue = "0")
+	private long maxBytes;
+
+	@PluginProperty(title = OPT_MAX_LINES, description = OPT_MAX_LINES_DESCRIPTION, defaultValue = "0")
+	private long maxLines;
+
+	@PluginProperty(title = OPT_TIMEOUT, description = OPT_TIMEOUT_DESCRIPTION, defaultValue = "0")
+	private int timeout;
+
+	@PluginProperty(title = OPT_PARTIAL_RESULTS, description = OPT_PARTIAL_RESULTS_DESCRIPTION, defaultValue = "false")
+	private boolean keepPartialResults;
+
+	@PluginProperty(title = OPT_METRICS_LEVEL, description = OPT_METRICS_LEVEL_DESCRIPTION, defaultValue = METRICS_LEVEL_DEBUG)
+	@SelectValues(values = { METRICS_LEVEL_DEBUG, METRICS_LEVEL_VERBOSE, METRICS_LEVEL_INFO, METRICS_LEVEL_OFF })
+	private String metricsLevel;
+
+	@PluginProperty(title = OPT_METRICS_OUTPUT, description = OPT_METRICS_OUTPUT_DESCRIPTION, defaultValue = "false")
+	private boolean metricsOutput;
+
+	/**
+	 * Runs the commands of scans on the node; tests set a local stand-in.
+	 */
+	NodeCommandRunner nodeRunner;
+
 	@Override
 	public void executeNodeStep(PluginStepContext context, Map<String, Object> configuration, INodeEntry node)
 			throws NodeStepException {
-		path = configuration.getOrDefault("path", path).toString();
-		group = configuration.getOrDefault("group", group).toString();
-		name = configuration.getOrDefault("name", defaultString(name, "data")).toString();
-		regex = configuration.getOrDefault("regex", regex).toString();
-		elevateToGlobal = configuration.getOrDefault("elevateToGlobal", elevateToGlobal).toString().equals("true");
+		LookupRequest request;
+		try {
+			request = LookupRequest.builder(configuration).path(path).group(group)
+					.name(defaultString(name, "data")).regex(regex).patterns(patterns).elevateToGlobal(elevateToGlobal)
+					.fromEnd(fromEnd).incremental(incremental).scanOnNode(scanOnNode).parallelism(parallelism)
+					.engine(engine).maxBytes(maxBytes).maxLines(maxLines).timeout(timeout).keepPartialResults(keepPartialResults)
+					.metricsLevel(metricsLevel).metricsOutput(metricsOutput).build();
+		} catch (IllegalArgumentException e) {
+			String msg = e.getMessage();
+			throw new NodeStepException(msg, StepFailureReason.ConfigurationFailure, node.getNodename());
+		}
 
+		List<ScanTarget> targets;
 		try {
-			new FileLookupUtils(context).scanPropertiesFile(path, group, name, regex, elevateToGlobal);
+			targets = request.targets();
+		} catch (IllegalArgumentException e) {
+			String msg = e.getMessage();
+			throw new NodeStepException(msg, StepFailureReason.ConfigurationFailure, node.getNodename());
+		}
+		if (targets.isEmpty()) {
+			String msg = "No pattern given";
+			throw new NodeStepException(msg, StepFailureReason.ConfigurationFailure, node.getNodename());
+		}
+		if (request.isScanOnNode() && request.isIncremental()) {
+			String msg = "Incremental scans need the file on the Rundeck server";
+			throw new NodeStepException(msg, StepFailureReason.ConfigurationFailure, node.getNodename());
+		}
+		if (request.isScanOnNode() && request.isFromEnd() && !filtersOnNode(targets, node)) {
+			String msg = "Scanning from the end on the node needs a literal in every pattern";
+			throw new NodeStepException(msg, StepFailureReason.ConfigurationFailure, node.getNodename());
+		}
+
+		try {
+			FileLookupUtils utils = new FileLookupUtils(context, request);
+			if (request.isScanOnNode()) {
+				NodeCommandRunner runner = nodeRunner == null ? new FrameworkCommandRunner(context) : nodeRunner;
+				utils.scanNodeFile(runner, node, request.getPath(), targets, request.isElevateToGlobal());
+			} else {
+				utils.scanPropertiesFile(request.getPath(), targets, request.isElevateToGlobal());
+			}
+		} catch (LookupBudgetException e) {
+			String nodeName = node.getNodename();
+			throw new NodeStepException(e.getMessage(), e, FileLookupFailureReason.BUDGET_EXCEEDED, nodeName);
 		} catch (IOException e) {
-			String msg = "Could not read file " + path;
+			String msg = "Could not read file " + request.getPath();
 			String nodeName = node.getNodename();
 			throw new NodeStepException(msg, e, FileLookupFailureReason.FILE_NOT_READABLE, nodeName);
 		}
 	}
+
+	/**
+	 * @return True if the node can filter the file for every target; see
+	 *         NodeFileScanner.
+	 */
+	private static boolean filtersOnNode(List<ScanTarget> targets, INodeEntry node) throws NodeStepException {
+		List<Pattern> patterns = new ArrayList<>(targets.size());
+		try {
+			for (ScanTarget target : targets) {
+				patterns.add(PatternCache.shared().compile(target.getRegex()));
+			}
+		} catch (PatternSyntaxException e) {
+			String msg = e.getMessage();
+			throw new NodeStepException(msg, StepFailureReason.ConfigurationFailure, node.getNodename());
+		}
+		return NodeFileScanner.filtersOnNode(patterns);
+	}
 }
@@ -16,17 +16,22 @@
 package com.bioraft.rundeck.filelookup;
 
 import com.dtolabs.rundeck.core.execution.workflow.steps.StepException;
+import com.dtolabs.rundeck.core.execution.workflow.steps.StepFailureReason;
 import com.dtolabs.rundeck.core.plugins.Plugin;
 import com.dtolabs.rundeck.plugins.ServiceNameConstants;
 import com.dtolabs.rundeck.plugins.descriptions.PluginDescription;
 import com.dtolabs.rundeck.plugins.descriptions.PluginProperty;
+import com.dtolabs.rundeck.plugins.descriptions.RenderingOption;
+import com.dtolabs.rundeck.plugins.descriptions.SelectValues;
 import com.dtolabs.rundeck.plugins.step.PluginStepContext;
 import com.dtolabs.rundeck.plugins.step.StepPlugin;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 import static com.bioraft.rundeck.filelookup.Constants.*;
+import static com.dtolabs.rundeck.core.plugins.configuration.StringRenderingConstants.DISPLAY_TYPE_KEY;
 import static org.apache.commons.lang.StringUtils.defaultString;
 
 /**
@@ -40,7 +45,8 @@ import static org.apache.commons.lang.StringUtils.defaultString;
  * option. When two capture fields are given, the variable name will taken from
  * the first capture field and the value from the second.
  * 
- * In cases where there are multiple matches found, the first is returned.
+ * In cases where there are multiple matches found, the first is returned, or
+ * the last when the file is scanned from the end.
  *
  * @author Karl DeBisschop <kdebisschop@gmail.com>
  * @since 2019-12-11
@@ -59,24 +65,81 @@ public class ScanFileStepPlugin implements StepPlugin {
 	@PluginProperty(title = OPT_NAME, description = OPT_NAME_DESCRIPTION)
 	private String name;
 
-	@PluginProperty(title = OPT_PATTERN, description = OPT_PATTERN_DESCRIPTION, required = true)
+	@PluginProperty(title = OPT_PATTERN, description = OPT_PATTERN_DESCRIPTION)
 	private String regex;
 
+	@PluginProperty(title = OPT_PATTERNS, description = OPT_PATTERNS_DESCRIPTION)
+	@RenderingOption(key = DISPLAY_TYPE_KEY, value = "MULTI_LINE")
+	private String patterns;
+
 	@PluginProperty(title = OPT_GLOBAL, description = OPT_GLOBAL_DESCRIPTION, required = true, defaultValue = "false")
 	private boolean elevateToGlobal;
 
+	@PluginProperty(title = OPT_FROM_END, description = OPT_FROM_END_DESCRIPTION, defaultValue = "false")
+	private boolean fromEnd;
+
+	@PluginProperty(title = OPT_INCREMENTAL, description = OPT_INCREMENTAL_DESCRIPTION, defaultValue = "false")
+	private boolean incremental;
+
+	@PluginProperty(title = OPT_PARALLELISM, description = OPT_PARALLELISM_DESCRIPTION, defaultValue = "1")
+	private int parallelism;
+
+	@PluginProperty(title = OPT_ENGINE, description = OPT_SCAN_ENGINE_DESCRIPTION, defaultValue = ENGINE_AUTO)
+	@SelectValues(values = { ENGINE_AUTO, ENGINE_READER, ENGINE_MAPPED, ENGINE_PARALLEL })
+	private String engine;
+
+	@PluginProperty(title = OPT_MAX_BYTES, description = OPT_MAX_BYTES_DESCRIPTION, defaultValue = "0")
+	private long maxBytes;
+
+	@PluginProperty(title = OPT_MAX_LINES, description = OPT_MAX_LINES_DESCRIPTION, defaultValue = "0")
+	private long maxLines;
+
+	@PluginProperty(title = OPT_TIMEOUT, description = OPT_TIMEOUT_DESCRIPTION, defaultValue = "0")
+	private int timeout;
+
+	@PluginProperty(title = OPT_PARTIAL_RESULTS, description = OPT_PARTIAL_RESULTS_DESCRIPTION, defaultValue = "false")
+	private boolean keepPartialResults;
+
+	@PluginProperty(title = OPT_METRICS_LEVEL, description = OPT_METRICS_LEVEL_DESCRIPTION, defaultValue = METRICS_LEVEL_DEBUG)
+	@SelectValues(values = { METRICS_LEVEL_DEBUG, METRICS_LEVEL_VERBOSE, METRICS_LEVEL_INFO, METRICS_LEVEL_OFF })
+	private String metricsLevel;
+
+	@PluginProperty(title = OPT_METRICS_OUTPUT, description = OPT_METRICS_OUTPUT_DESCRIPTION, defaultValue = "false")
+	private boolean metricsOutput;
+
 	@Override
 	public void executeStep(PluginStepContext context, Map<String, Object> configuration) throws StepException {
-		path = configuration.getOrDefault("path", path).toString();
-		group = configuration.getOrDefault("group", group).toString();
-		name = configuration.getOrDefault("name", defaultString(name, "data")).toString();
-		regex = configuration.getOrDefault("regex", regex).toString();
-		elevateToGlobal = configuration.getOrDefault("elevateToGlobal", elevateToGlobal).toString().equals("true");
+		LookupRequest request;
+		try {
+			request = LookupRequest.builder(configuration).path(path).group(group)
+					.name(defaultString(name, "data")).regex(regex).patterns(patterns).elevateToGlobal(elevateToGlobal)
+					.fromEnd(fromEnd).incremental(incremental).parallelism(parallelism).engine(engine)
+					.maxBytes(maxBytes).maxLines(maxLines).timeout(timeout).keepPartialResults(keepPartialResults)
+					.metricsLevel(metricsLevel).metricsOutput(metricsOutput).build();
+		} catch (IllegalArgumentException e) {
+			String msg = e.getMessage();
+			throw new StepException(msg, StepFailureReason.ConfigurationFailure);
+		}
+
+		List<ScanTarget> targets;
+		try {
+			targets = request.targets();
+		} catch (IllegalArgumentException e) {
+			String msg = e.getMessage();
+			throw new StepException(msg, StepFailureReason.ConfigurationFailure);
+		}
+		if (targets.isEmpty()) {
+			String msg = "No pattern given";
+			throw new StepException(msg, StepFailureReason.ConfigurationFailure);
+		}
 
 		try {
-			new FileLookupUtils(context).scanPropertiesFile(path, group, name, regex, elevateToGlobal);
+			FileLookupUtils utils = new FileLookupUtils(context, request);
+			utils.scanPropertiesFile(request.getPath(), targets, request.isElevateToGlobal());
+		} catch (LookupBudgetException e) {
+			throw new StepException(e.getMessage(), e, FileLookupFailureReason.BUDGET_EXCEEDED);
 		} catch (IOException e) {
-			String msg = "Could not read file " + path;
+			String msg = "Could not read file " + request.getPath();
 			throw new StepException(msg, e, FileLookupFailureReason.FILE_NOT_READABLE);
 		}
 	}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pattern to scan for and the variable its capture is written to.
+ */
+final class ScanTarget {
+
+	private final String group;
+
+	private final String name;
+
+	private final String regex;
+
+	ScanTarget(String group, String name, String regex) {
+		this.group = group;
+		this.name = name;
+		this.regex = regex;
+	}
+
+	String getGroup() {
+		return group;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	String getRegex() {
+		return regex;
+	}
+
+	/**
+	 * Builds the targets for a scan step.
+	 *
+	 * The single Pattern/Name pair comes first, followed by one target for each
+	 * non-blank line of patterns. Lines take the form "name=regex" or
+	 * "group.name=regex"; without a group the step's group is used. Only the
+	 * first "=" separates the name, so the expression may contain more.
+	 *
+	 * @throws IllegalArgumentException When a line has no name.
+	 */
+	static List<ScanTarget> parse(String group, String name, String regex, String patterns) {
+		List<ScanTarget> targets = new ArrayList<>();
+		if (regex != null && !regex.isEmpty()) {
+			targets.add(new ScanTarget(group, name, regex));
+		}
+		if (patterns == null) {
+			return targets;
+		}
+		for (String line : patterns.split("\\r?\\n|\\r")) {
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+			int equals = line.indexOf('=');
+			String target = equals < 0 ? "" : line.substring(0, equals).trim();
+			if (target.isEmpty()) {
+				throw new IllegalArgumentException("Pattern line has no variable name: " + line);
+			}
+			int dot = target.lastIndexOf('.');
+			if (dot < 0) {
+				targets.add(new ScanTarget(group, target, line.substring(equals + 1)));
+			} else {
+				targets.add(new ScanTarget(target.substring(0, dot), target.substring(dot + 1), line.substring(equals + 1)));
+			}
+		}
+		return targets;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Lets concurrent lookups that need the same result share one read of the file.
+ *
+ * A node step dispatched to many nodes runs the same lookup of the same
+ * server-local file on every node thread. The first thread to ask for a key
+ * does the work; threads asking for the same key while it runs wait for its
+ * result instead of repeating it. Nothing is kept once the work finishes, so
+ * keys must include the file version and a later lookup reads the file again.
+ *
+ * Every waiting thread gets the same result object, so results must not be
+ * changed once returned. A failure is shared the same way, except when the
+ * thread doing the work was cancelled: the waiting threads then try again.
+ */
+final class SingleFlight {
+
+	private static final SingleFlight SHARED = new SingleFlight();
+
+	private final ConcurrentMap<Object, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+	static SingleFlight shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Work whose result may be shared between lookups.
+	 */
+	interface Work<T> {
+		T run() throws IOException;
+	}
+
+	/**
+	 * Returns the result of the work for this key, running it only if no other
+	 * thread is already running it.
+	 *
+	 * @throws InterruptedIOException When interrupted while waiting.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T run(Object key, Work<T> work) throws IOException {
+		while (true) {
+			CompletableFuture<Object> flight = new CompletableFuture<>();
+			CompletableFuture<Object> current = flights.putIfAbsent(key, flight);
+			if (current == null) {
+				return lead(key, flight, work);
+			}
+			try {
+				return (T) await(current);
+			} catch (CancellationException e) {
+				// The thread doing the work was cancelled; take over from it.
+			}
+		}
+	}
+
+	private <T> T lead(Object key, CompletableFuture<Object> flight, Work<T> work) throws IOException {
+		try {
+			T result = work.run();
+			flights.remove(key, flight);
+			flight.complete(result);
+			return result;
+		} catch (Throwable e) {
+			flights.remove(key, flight);
+			if (e instanceof InterruptedIOException || Thread.currentThread().isInterrupted()) {
+				flight.cancel(false);
+			} else {
+				flight.completeExceptionally(e);
+			}
+			throw e;
+		}
+	}
+
+	private static Object await(CompletableFuture<Object> flight) throws IOException {
+		try {
+			return flight.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Lookup cancelled");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * @return The number of threads waiting for the work running for this key.
+	 */
+	int waiting(Object key) {
+		CompletableFuture<Object> flight = flights.get(key);
+		return flight == null ? 0 : flight.getNumberOfDependents();
+	}
+
+	/**
+	 * @return The number of keys whose work is running.
+	 */
+	int size() {
+		return flights.size();
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search of a YAML stream for the first scalar stored under a key.
+ *
+ * Works on the parser's event stream, so no node graph is ever built: the only
+ * state kept is one entry per open mapping or sequence, plus the text of
+ * anchored scalars so that aliases to them can be matched. Events are pulled
+ * lazily and the reader is abandoned at the last needed match. The match
+ * returned is the same as for JsonFieldFinder: the first scalar in document
+ * order whose key matches, at any depth. Streams with several documents are
+ * searched in order.
+ */
+class YamlFieldFinder {
+
+	private YamlFieldFinder() {
+		throw new IllegalStateException("Utility class");
+	}
+
+	/**
+	 * @param reader    The YAML text.
+	 * @param fieldName The key to look for.
+	 * @return The text of the first matched scalar, or null if not matched.
+	 * @throws org.yaml.snakeyaml.error.YAMLException When the text is not valid YAML.
+	 */
+	static String findFirst(Reader reader, String fieldName) {
+		return findAll(reader, Collections.singleton(fieldName)).get(fieldName);
+	}
+
+	/**
+	 * Resolves several keys in one pass over the events, stopping once each has
+	 * a value.
+	 *
+	 * @param reader     The YAML text.
+	 * @param fieldNames The keys to look for.
+	 * @return The first value of each key that was found, keyed by key.
+	 * @throws org.yaml.snakeyaml.error.YAMLException When the text is not valid YAML.
+	 */
+	static Map<String, String> findAll(Reader reader, Collection<String> fieldNames) {
+		Set<String> wanted = new HashSet<>(fieldNames);
+		Map<String, String> found = new LinkedHashMap<>();
+		Map<String, String> anchors = new HashMap<>();
+		Deque<Level> open = new ArrayDeque<>();
+		Iterator<Event> events = new Yaml().parse(reader).iterator();
+		while (found.size() < wanted.size() && events.hasNext()) {
+			Event event = events.next();
+			Level level = open.peek();
+			if (event instanceof CollectionEndEvent) {
+				open.pop();
+				level = open.peek();
+				if (level != null) {
+					level.completed(null);
+				}
+				continue;
+			}
+			String text = null;
+			if (event instanceof ScalarEvent) {
+				ScalarEvent scalar = (ScalarEvent) event;
+				text = scalar.getValue();
+				if (scalar.getAnchor() != null) {
+					anchors.put(scalar.getAnchor(), text);
+				}
+			} else if (event instanceof AliasEvent) {
+				text = anchors.get(((AliasEvent) event).getAnchor());
+			} else if (event instanceof CollectionStartEvent) {
+				open.push(new Level(event instanceof MappingStartEvent));
+				continue;
+			} else {
+				continue;
+			}
+			if (level == null) {
+				continue;
+			}
+			String key = level.key;
+			boolean isValue = level.expectsValue();
+			level.completed(text);
+			if (isValue && text != null && wanted.contains(key) && !found.containsKey(key)) {
+				found.put(key, text);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * An open mapping or sequence. Mappings alternate between keys and values;
+	 * the last scalar key is kept until its value has been seen.
+	 */
+	private static final class Level {
+		private final boolean mapping;
+		private boolean valueNext;
+		private String key;
+
+		Level(boolean mapping) {
+			this.mapping = mapping;
+		}
+
+		boolean expectsValue() {
+			return mapping && valueNext;
+		}
+
+		/**
+		 * Records that a key, value or element has been read.
+		 *
+		 * @param text The scalar text, or null for a collection or unresolved alias.
+		 */
+		void completed(String text) {
+			if (!mapping) {
+				return;
+			}
+			if (valueNext) {
+				key = null;
+			} else {
+				key = text;
+			}
+			valueNext = !valueNext;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.execution.workflow.steps.StepException;
+import com.dtolabs.rundeck.core.execution.workflow.steps.StepFailureReason;
+import com.dtolabs.rundeck.core.plugins.Plugin;
+import com.dtolabs.rundeck.plugins.ServiceNameConstants;
+import com.dtolabs.rundeck.plugins.descriptions.PluginDescription;
+import com.dtolabs.rundeck.plugins.descriptions.PluginProperty;
+import com.dtolabs.rundeck.plugins.descriptions.RenderingOption;
+import com.dtolabs.rundeck.plugins.descriptions.SelectValues;
+import com.dtolabs.rundeck.plugins.step.PluginStepContext;
+import com.dtolabs.rundeck.plugins.step.StepPlugin;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static com.bioraft.rundeck.filelookup.Constants.*;
+import static com.dtolabs.rundeck.core.plugins.configuration.StringRenderingConstants.DISPLAY_TYPE_KEY;
+
+/**
+ * Workflow Step Plug-in to find value of first matching key in YAML file.
+ *
+ * Scans the specified file for the indicated key and returns the value of the
+ * first matching scalar, with the same depth-first semantics as the JSON
+ * lookup: the match found is the first value match seen when scanning down the
+ * file. The file is read as a stream of parser events, so it is never loaded
+ * as a whole, and reading stops at the match.
+ */
+@Plugin(name = YamlFindValueStepPlugin.SERVICE_PROVIDER_NAME, service = ServiceNameConstants.WorkflowStep)
+@PluginDescription(title = "YAML Lookup Plugin", description = "Scans a YAML file for the indicated key and returns the first atomic value.")
+public class YamlFindValueStepPlugin implements StepPlugin {
+	public static final String SERVICE_PROVIDER_NAME = "com.bioraft.rundeck.filelookup.YamlFindValueStepPlugin";
+
+	@PluginProperty(title = OPT_PATH, description = OPT_PATH_DESCRIPTION, required = true)
+	private String path;
+
+	@PluginProperty(title = OPT_GROUP, description = OPT_GROUP_DESCRIPTION, required = true)
+	private String group;
+
+	@PluginProperty(title = OPT_NAME, description = OPT_NAME_DESCRIPTION)
+	private String name;
+
+	@PluginProperty(title = OPT_FIELD_NAME, description = OPT_YAML_KEY_DESCRIPTION)
+	private String fieldName;
+
+	@PluginProperty(title = OPT_FIELDS, description = OPT_YAML_KEYS_DESCRIPTION)
+	@RenderingOption(key = DISPLAY_TYPE_KEY, value = "MULTI_LINE")
+	private String fields;
+
+	@PluginProperty(title = OPT_GLOBAL, description = OPT_GLOBAL_DESCRIPTION, required = true, defaultValue = "false")
+	private boolean elevateToGlobal;
+
+	@PluginProperty(title = OPT_METRICS_LEVEL, description = OPT_METRICS_LEVEL_DESCRIPTION, defaultValue = METRICS_LEVEL_DEBUG)
+	@SelectValues(values = { METRICS_LEVEL_DEBUG, METRICS_LEVEL_VERBOSE, METRICS_LEVEL_INFO, METRICS_LEVEL_OFF })
+	private String metricsLevel;
+
+	@PluginProperty(title = OPT_METRICS_OUTPUT, description = OPT_METRICS_OUTPUT_DESCRIPTION, defaultValue = "false")
+	private boolean metricsOutput;
+
+	@Override
+	public void executeStep(PluginStepContext context, Map<String, Object> configuration) throws StepException {
+		LookupRequest request = LookupRequest.builder(configuration).path(path).group(group).name(name)
+				.fieldName(fieldName).fields(fields).elevateToGlobal(elevateToGlobal).metricsLevel(metricsLevel)
+				.metricsOutput(metricsOutput).build();
+
+		Map<String, String> lookups = request.lookups(true);
+		if (lookups.isEmpty()) {
+			throw new StepException("No key given", StepFailureReason.ConfigurationFailure);
+		}
+
+		try {
+			FileLookupUtils utils = new FileLookupUtils(context, request);
+			utils.scanYamlFile(request.getPath(), lookups, request.getGroup(), request.isElevateToGlobal());
+		} catch (IOException e) {
+			throw new StepException("Could not read/parse file " + request.getPath(), e, FileLookupFailureReason.FILE_NOT_READABLE);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for CharLineReader.
+ */
+public class CharLineReaderTest {
+
+	@Test
+	public void splitsLikeReadLine() throws IOException {
+		assertEquals(Arrays.asList("a", "", "b", "c", "d"), lines("a\n\nb\r\nc\rd", 16));
+		assertEquals(Arrays.asList("a", "b"), lines("a\nb\n", 16));
+		assertEquals(Arrays.asList("", ""), lines("\r\n\r", 16));
+		assertTrue(lines("", 16).isEmpty());
+	}
+
+	@Test
+	public void joinsCarriageReturnAndLineFeedAcrossReads() throws IOException {
+		// With a 16 char buffer the \r is the last char of the first read.
+		String text = "0123456789abcde\r\nnext\r\n";
+		assertEquals(Arrays.asList("0123456789abcde", "next"), lines(text, 16));
+	}
+
+	@Test
+	public void growsForLongLines() throws IOException {
+		char[] chars = new char[1000];
+		Arrays.fill(chars, 'x');
+		String longLine = new String(chars);
+		assertEquals(Arrays.asList("a", longLine, "b"), lines("a\n" + longLine + "\nb", 16));
+	}
+
+	@Test
+	public void reusesOneView() throws IOException {
+		try (CharLineReader reader = new CharLineReader(new StringReader("a\nb\n"), 16)) {
+			CharSequence first = reader.readLine();
+			assertEquals("a", first.toString());
+			assertSame(first, reader.readLine());
+			assertEquals("b", first.toString());
+			assertNull(reader.readLine());
+		}
+	}
+
+	@Test
+	public void feedsPatternScan() throws IOException {
+		PatternScan scan = new PatternScan(PatternCache.shared().compile("^(\\w+)=(\\d+)$"), "data");
+		try (CharLineReader reader = new CharLineReader(new StringReader("a=1\nb=x\nb=2\na=3\n"), 16)) {
+			CharSequence line;
+			while ((line = reader.readLine()) != null) {
+				scan.visit(line);
+			}
+		}
+		assertEquals("{a=1, b=2}", scan.values().toString());
+	}
+
+	private static List<String> lines(String text, int bufferSize) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (CharLineReader reader = new CharLineReader(new StringReader(text), bufferSize)) {
+			CharSequence line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line.toString());
+			}
+		}
+		return lines;
+	}
+}
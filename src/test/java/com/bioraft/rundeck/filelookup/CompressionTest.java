@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.execution.workflow.SharedOutputContext;
+import com.dtolabs.rundeck.plugins.PluginLogger;
+import com.dtolabs.rundeck.plugins.step.PluginStepContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import static com.dtolabs.rundeck.core.Constants.ERR_LEVEL;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for Compression and compressed input to the lookups.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class CompressionTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Mock
+	PluginStepContext context;
+
+	@Mock
+	PluginLogger logger;
+
+	@Mock
+	SharedOutputContext sharedOutputContext;
+
+	@Test
+	public void detectsFormatByMagicBytes() throws IOException {
+		assertEquals(Compression.Format.GZIP, Compression.detect(gzip("app.log.1", "a=1\n")));
+		assertEquals(Compression.Format.NONE, Compression.detect(plain("app.log", "a=1\n")));
+		assertEquals(Compression.Format.NONE, Compression.detect(plain("empty.log", "")));
+		byte[] zstd = { 0x28, (byte) 0xb5, 0x2f, (byte) 0xfd };
+		assertEquals(Compression.Format.ZSTD, Compression.detect(zstd, 4));
+		assertEquals(Compression.Format.NONE, Compression.detect(zstd, 3));
+	}
+
+	@Test
+	public void decompressesGzipWhileReading() throws IOException {
+		File file = gzip("app.log.gz", "first\nsecond\n");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = Compression.open(file)) {
+			byte[] buffer = new byte[8];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				out.write(buffer, 0, n);
+			}
+		}
+		assertEquals("first\nsecond\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void plainFilesAreReadAsIs() throws IOException {
+		File file = plain("app.log", "a=1\n");
+		try (InputStream in = Compression.open(file)) {
+			assertEquals('a', in.read());
+		}
+	}
+
+	@Test
+	public void scansGzipFile() throws IOException {
+		File file = gzip("app.log.1", "key1=value1\nkey2=value2\n");
+		when(context.getLogger()).thenReturn(logger);
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		FileLookupUtils subject = new FileLookupUtils(context);
+		subject.mappedScanThreshold = 0;
+		subject.scanPropertiesFile(file.getPath(), "data", "field", "^(key\\d)=(.*)$", false);
+		verify(sharedOutputContext).addOutput("data", "key1", "value1");
+		verify(sharedOutputContext).addOutput("data", "key2", "value2");
+	}
+
+	@Test(expected = IOException.class)
+	public void refusesToScanGzipFileFromEnd() throws IOException {
+		File file = gzip("app.log.1", "key1=value1\n");
+		when(context.getLogger()).thenReturn(logger);
+		FileLookupUtils subject = new FileLookupUtils(context);
+		subject.setFromEnd(true);
+		try {
+			subject.scanPropertiesFile(file.getPath(), "data", "field", "^(key\\d)=(.*)$", false);
+		} finally {
+			verify(logger).log(eq(ERR_LEVEL), contains("forward from the start"));
+		}
+	}
+
+	@Test
+	public void looksUpJsonInGzipFileWithoutCaching() throws IOException {
+		File file = gzip("service.json.gz", "{\"name\": \"frontend\", \"state\": \"active\"}");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		FileLookupUtils subject = new FileLookupUtils(context);
+		subject.documentCache = new JsonDocumentCache(JsonDocumentCache.DEFAULT_MAX_BYTES);
+		subject.scanJsonFile(file.getPath(), "state", "group", "state", false);
+		verify(sharedOutputContext).addOutput("group", "state", "active");
+		assertEquals(0, subject.documentCache.size());
+	}
+
+	@Test
+	public void looksUpYamlInGzipFile() throws IOException {
+		File file = gzip("service.yaml.gz", "service:\n  name: frontend\n");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		FileLookupUtils subject = new FileLookupUtils(context);
+		subject.scanYamlFile(file.getPath(), Collections.singletonMap("service", "name"), "group", false);
+		verify(sharedOutputContext).addOutput("group", "service", "frontend");
+	}
+
+	private File plain(String name, String content) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private File gzip(String name, String content) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file.toPath()))) {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+		return file;
+	}
+}
@@ -1,24 +1,41 @@
 package com.bioraft.rundeck.filelookup;
 
+import com.dtolabs.rundeck.core.execution.ExecutionContext;
 import com.dtolabs.rundeck.core.execution.workflow.SharedOutputContext;
 import com.dtolabs.rundeck.plugins.PluginLogger;
 import com.dtolabs.rundeck.plugins.step.PluginStepContext;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
 import java.util.Objects;
 
+import static com.dtolabs.rundeck.core.Constants.DEBUG_LEVEL;
 import static com.dtolabs.rundeck.core.Constants.ERR_LEVEL;
+import static com.dtolabs.rundeck.core.Constants.INFO_LEVEL;
+import static com.dtolabs.rundeck.core.Constants.WARN_LEVEL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
 public class FileLookupUtilsTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Mock
     PluginStepContext context;
 
@@ -31,6 +48,12 @@ public class FileLookupUtilsTest {
     @Mock
     ObjectMapper objectMapper;
 
+    @Mock
+    JsonFactory jsonFactory;
+
+    @Mock
+    ExecutionContext executionContext;
+
     @Test(expected = IOException.class)
     public void cannotParseJson() throws IOException {
         ClassLoader classLoader = getClass().getClassLoader();
@@ -38,11 +61,53 @@ public class FileLookupUtilsTest {
 
         when(context.getLogger()).thenReturn(logger);
         FileLookupUtils subject = new FileLookupUtils(context, objectMapper);
-        when(objectMapper.readTree((Reader) any())).thenThrow(new IOException());
+        when(objectMapper.getFactory()).thenReturn(jsonFactory);
+        when(jsonFactory.createParser((InputStream) any())).thenThrow(new IOException());
         subject.scanJsonFile(path, "field", "group", "name", false);
         verify(logger).log(eq(ERR_LEVEL), startsWith("Could parse JSON file "));
     }
 
+    @Test
+    public void jsonLookupReusesCachedDocument() throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String path = Objects.requireNonNull(classLoader.getResource("service.json")).getFile();
+        String group = "group";
+
+        when(context.getOutputContext()).thenReturn(sharedOutputContext);
+        FileLookupUtils subject = new FileLookupUtils(context);
+        subject.documentCache = new JsonDocumentCache(JsonDocumentCache.DEFAULT_MAX_BYTES);
+        subject.scanJsonFile(path, "name", group, "first", false);
+        assertEquals(1, subject.documentCache.size());
+        subject.scanJsonFile(path, "state", group, "second", false);
+        assertEquals(1, subject.documentCache.size());
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("first"), eq("frontend"));
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("second"), eq("active"));
+    }
+
+    @Test
+    public void jsonLookupResolvesSeveralFields() throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String path = Objects.requireNonNull(classLoader.getResource("service.json")).getFile();
+        String group = "group";
+        Map<String, String> fields = FileLookupUtils.jsonFields("name", "service", "state, missing\nstatus=state");
+
+        when(context.getOutputContext()).thenReturn(sharedOutputContext);
+        FileLookupUtils subject = new FileLookupUtils(context);
+        subject.documentCache = new JsonDocumentCache(0);
+        subject.scanJsonFile(path, fields, group, false);
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("service"), eq("frontend"));
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("state"), eq("active"));
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("status"), eq("active"));
+        verify(sharedOutputContext, times(3)).addOutput(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    public void parsesJsonFieldList() {
+        Map<String, String> fields = FileLookupUtils.jsonFields("", "ignored", " a ,x=b\r\n\n y = c ,z=,");
+        assertEquals("{a=a, x=b, y=c}", fields.toString());
+        assertEquals("{out=a}", FileLookupUtils.jsonFields("a", "out", null).toString());
+    }
+
     @Test
     public void matchTwoGroups() throws IOException {
         ClassLoader classLoader = getClass().getClassLoader();
@@ -57,6 +122,37 @@ public class FileLookupUtilsTest {
         verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("state"), eq("active"));
     }
 
+    @Test
+    public void matchTwoGroupsMapped() throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String path = Objects.requireNonNull(classLoader.getResource("service.json")).getFile();
+        String group = "group";
+
+        when(context.getLogger()).thenReturn(logger);
+        when(context.getOutputContext()).thenReturn(sharedOutputContext);
+        FileLookupUtils subject = new FileLookupUtils(context);
+        subject.mappedScanThreshold = 0;
+        subject.scanPropertiesFile(path, group, "field", "\"(name|state)\": \"([a-z]+)\"", false);
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("name"), eq("frontend"));
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("state"), eq("active"));
+    }
+
+    @Test
+    public void matchTwoGroupsParallel() throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String path = Objects.requireNonNull(classLoader.getResource("service.json")).getFile();
+        String group = "group";
+
+        when(context.getLogger()).thenReturn(logger);
+        when(context.getOutputContext()).thenReturn(sharedOutputContext);
+        FileLookupUtils subject = new FileLookupUtils(context);
+        subject.mappedScanThreshold = 0;
+        subject.setParallelism(4);
+        subject.scanPropertiesFile(path, group, "field", "\"(name|state)\": \"([a-z]+)\"", false);
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("name"), eq("frontend"));
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("state"), eq("active"));
+    }
+
     @Test
     public void matchNoGroups() throws IOException {
         ClassLoader classLoader = getClass().getClassLoader();
@@ -83,4 +179,154 @@ public class FileLookupUtilsTest {
         verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("field"), eq("\"name\": \"frontend\""));
         verify(sharedOutputContext, times(1)).addOutput(any(), eq("export"), eq(group + ".field"), eq("\"name\": \"frontend\""));
     }
+
+    @Test
+    public void skipsDebugMessagesBelowDebugLevel() throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String path = Objects.requireNonNull(classLoader.getResource("service.json")).getFile();
+        String group = "group";
+
+        // The logger is not stubbed, so building a debug message would fail here.
+        when(context.getExecutionContext()).thenReturn(executionContext);
+        when(executionContext.getLoglevel()).thenReturn(INFO_LEVEL);
+        when(context.getOutputContext()).thenReturn(sharedOutputContext);
+        FileLookupUtils subject = new FileLookupUtils(context);
+        subject.scanPropertiesFile(path, group, "field", "\"(name|state)\": \"([a-z]+)\"", true);
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("name"), eq("frontend"));
+        verify(context, never()).getLogger();
+    }
+
+    @Test
+    public void logsMatchedLinesAtDebugLevel() throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String path = Objects.requireNonNull(classLoader.getResource("service.json")).getFile();
+        String group = "group";
+
+        when(context.getExecutionContext()).thenReturn(executionContext);
+        when(executionContext.getLoglevel()).thenReturn(DEBUG_LEVEL);
+        when(context.getLogger()).thenReturn(logger);
+        when(context.getOutputContext()).thenReturn(sharedOutputContext);
+        FileLookupUtils subject = new FileLookupUtils(context);
+        subject.mappedScanThreshold = 0;
+        subject.setParallelism(4);
+        subject.scanPropertiesFile(path, group, "field", "\"state\": \"([a-z]+)\"", false);
+        verify(logger, times(1)).log(DEBUG_LEVEL, "Matched     \"state\": \"active\",");
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("field"), eq("active"));
+    }
+
+    @Test
+    public void keepsValuesFoundBeforeMaxLines() throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String path = Objects.requireNonNull(classLoader.getResource("service.json")).getFile();
+        String group = "group";
+
+        when(context.getLogger()).thenReturn(logger);
+        when(context.getOutputContext()).thenReturn(sharedOutputContext);
+        FileLookupUtils subject = new FileLookupUtils(context);
+        subject.setLimits(0, 2, 0);
+        subject.setKeepPartialResults(true);
+        subject.scanPropertiesFile(path, group, "field", "\"(id|type)\": \"([a-z0-9]+)\"", false);
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("id"), eq("1s56"));
+        verify(sharedOutputContext, never()).addOutput(eq(group), eq("type"), anyString());
+        verify(logger).log(eq(WARN_LEVEL), contains("2 lines"));
+    }
+
+    @Test
+    public void failsWhenMaxLinesRunsOut() throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String path = Objects.requireNonNull(classLoader.getResource("service.json")).getFile();
+
+        when(context.getLogger()).thenReturn(logger);
+        FileLookupUtils subject = new FileLookupUtils(context);
+        subject.setLimits(0, 2, 0);
+        try {
+            subject.scanPropertiesFile(path, "group", "field", "\"(id|type)\": \"([a-z0-9]+)\"", false);
+            fail("Expected the lookup to run out of lines");
+        } catch (LookupBudgetException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Lookup of '" + path + "' stopped after "));
+        }
+        verify(logger).log(eq(ERR_LEVEL), contains("Max Lines (2) reached"));
+        verify(context, never()).getOutputContext();
+    }
+
+    @Test
+    public void mappedScanReadsNoMoreThanMaxBytes() throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String path = Objects.requireNonNull(classLoader.getResource("service.json")).getFile();
+        String group = "group";
+
+        when(context.getLogger()).thenReturn(logger);
+        when(context.getOutputContext()).thenReturn(sharedOutputContext);
+        FileLookupUtils subject = new FileLookupUtils(context);
+        subject.mappedScanThreshold = 0;
+        subject.setLimits(20, 0, 0);
+        subject.setKeepPartialResults(true);
+        subject.setMetricsOutput(true);
+        subject.scanPropertiesFile(path, group, "field", "\"(id|type)\": \"([a-z0-9]+)\"", false);
+        // The first two lines are exactly 20 bytes.
+        verify(sharedOutputContext, times(1)).addOutput(eq(group), eq("id"), eq("1s56"));
+        verify(sharedOutputContext, never()).addOutput(eq(group), eq("type"), anyString());
+        verify(sharedOutputContext).addOutput(group, "__metrics.bytesRead", "20");
+        verify(logger).log(eq(WARN_LEVEL), contains("Max Bytes (20) reached"));
+    }
+
+    @Test
+    public void jsonLookupKeepsNothingFromDocumentCutShort() throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String path = Objects.requireNonNull(classLoader.getResource("service.json")).getFile();
+
+        when(context.getLogger()).thenReturn(logger);
+        FileLookupUtils subject = new FileLookupUtils(context);
+        subject.setEngine(LookupEngine.STREAM);
+        subject.setLimits(1024, 0, 0);
+        subject.setKeepPartialResults(true);
+        subject.scanJsonFile(path, "name", "group", "name", false);
+        verify(context, never()).getOutputContext();
+        verify(logger).log(eq(WARN_LEVEL), contains("Max Bytes (1024) reached"));
+    }
+
+    @Test
+    public void enginesAgreeOnNonAsciiLines() throws IOException {
+        // The UTF-8 encoding of \u00c5 ends in 0x85, a line terminator if read as one char per byte.
+        File file = folder.newFile("hosts.conf");
+        Files.write(file.toPath(), "DB_PORT=5432\nDB_HOST=\u00c5land\n".getBytes(StandardCharsets.UTF_8));
+
+        when(context.getLogger()).thenReturn(logger);
+        when(context.getOutputContext()).thenReturn(sharedOutputContext);
+        for (LookupEngine engine : new LookupEngine[] { LookupEngine.READER, LookupEngine.MAPPED, LookupEngine.PARALLEL }) {
+            FileLookupUtils subject = new FileLookupUtils(context);
+            subject.setEngine(engine);
+            subject.scanPropertiesFile(file.getPath(), engine.option(), "host", "^DB_HOST=(.*)", false);
+        }
+        String expected = new String("\u00c5land".getBytes(StandardCharsets.UTF_8), LineDecoder.platform().charset());
+        verify(sharedOutputContext).addOutput("reader", "host", expected);
+        verify(sharedOutputContext).addOutput("mapped", "host", expected);
+        verify(sharedOutputContext).addOutput("parallel", "host", expected);
+
+        FileLookupUtils subject = new FileLookupUtils(context);
+        subject.setFromEnd(true);
+        subject.scanPropertiesFile(file.getPath(), "reverse", "host", "^DB_HOST=(.*)", false);
+        verify(sharedOutputContext).addOutput("reverse", "host", expected);
+    }
+
+    @Test
+    public void linesSkippedByLiteralSearchCountAgainstMaxLines() throws IOException {
+        File file = folder.newFile("noise.log");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("noise ").append(i).append('\n');
+        }
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+
+        when(context.getLogger()).thenReturn(logger);
+        FileLookupUtils subject = new FileLookupUtils(context);
+        subject.setEngine(LookupEngine.MAPPED);
+        subject.setLimits(0, 10, 0);
+        try {
+            subject.scanPropertiesFile(file.getPath(), "group", "host", "^DB_HOST=(.*)", false);
+            fail("Expected the lookup to run out of lines");
+        } catch (LookupBudgetException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(" 10 lines"));
+        }
+    }
 }
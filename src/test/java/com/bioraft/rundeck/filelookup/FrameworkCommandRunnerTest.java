@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.common.INodeEntry;
+import com.dtolabs.rundeck.core.execution.ExecutionContext;
+import com.dtolabs.rundeck.core.execution.ExecutionListener;
+import com.dtolabs.rundeck.core.execution.ExecutionService;
+import com.dtolabs.rundeck.core.execution.service.NodeExecutorResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.dtolabs.rundeck.core.Constants.ERR_LEVEL;
+import static com.dtolabs.rundeck.core.Constants.INFO_LEVEL;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for FrameworkCommandRunner.
+ */
+public class FrameworkCommandRunnerTest {
+
+	private final ExecutionContext execution = mock(ExecutionContext.class);
+
+	private final ExecutionListener listener = mock(ExecutionListener.class);
+
+	private final ExecutionService service = mock(ExecutionService.class);
+
+	private final INodeEntry node = mock(INodeEntry.class);
+
+	private final List<String> lines = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		when(execution.getExecutionListener()).thenReturn(listener);
+	}
+
+	@Test
+	public void visitsNormalOutputAndForwardsErrors() throws IOException {
+		when(service.executeCommand(any(), any(), eq(node))).thenAnswer(invocation -> {
+			ExecutionListener capturing = invocation.<ExecutionContext>getArgument(0).getExecutionListener();
+			capturing.log(INFO_LEVEL, "HOST=a");
+			capturing.log(ERR_LEVEL, "grep: warning");
+			capturing.log(INFO_LEVEL, "HOST=b", Collections.emptyMap());
+			return result(0);
+		});
+
+		int exit = new FrameworkCommandRunner(execution, service).run(node, Arrays.asList("cat", "app.env"), line -> {
+			lines.add(line.toString());
+			return false;
+		});
+
+		assertEquals(0, exit);
+		assertEquals(Arrays.asList("HOST=a", "HOST=b"), lines);
+		verify(listener).log(ERR_LEVEL, "grep: warning");
+		verify(listener, never()).log(INFO_LEVEL, "HOST=a");
+	}
+
+	@Test
+	public void dropsOutputOnceVisitorIsDone() throws IOException {
+		when(service.executeCommand(any(), any(), eq(node))).thenAnswer(invocation -> {
+			ExecutionListener capturing = invocation.<ExecutionContext>getArgument(0).getExecutionListener();
+			capturing.log(INFO_LEVEL, "HOST=a");
+			capturing.log(INFO_LEVEL, "HOST=b");
+			return result(0);
+		});
+
+		new FrameworkCommandRunner(execution, service).run(node, Arrays.asList("cat", "app.env"), line -> {
+			lines.add(line.toString());
+			return true;
+		});
+
+		assertEquals(Collections.singletonList("HOST=a"), lines);
+		verify(listener, never()).log(INFO_LEVEL, "HOST=b");
+	}
+
+	@Test
+	public void returnsResultCode() throws IOException {
+		NodeExecutorResult result = result(2);
+		when(service.executeCommand(any(), any(), eq(node))).thenReturn(result);
+
+		assertEquals(2, new FrameworkCommandRunner(execution, service).run(node, Arrays.asList("cat", "app.env"),
+				line -> false));
+	}
+
+	@Test(expected = IOException.class)
+	public void missingResultIsAnError() throws IOException {
+		new FrameworkCommandRunner(execution, service).run(node, Arrays.asList("cat", "app.env"), line -> false);
+	}
+
+	private static NodeExecutorResult result(int code) {
+		NodeExecutorResult result = mock(NodeExecutorResult.class);
+		when(result.getResultCode()).thenReturn(code);
+		return result;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for JsonBreadthFirstFinder.
+ */
+public class JsonBreadthFirstFinderTest {
+
+	private final JsonFactory factory = new JsonFactory();
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	public void returnsShallowestMatchEvenWhenLater() throws IOException {
+		String json = "{\"a\": {\"b\": {\"name\": \"deep\"}, \"name\": \"middle\"}, \"list\": [{\"name\": \"item\"}], "
+				+ "\"name\": \"shallow\"}";
+		assertEquals("shallow", find(json, "name"));
+	}
+
+	@Test
+	public void returnsEarliestOfEquallyDeepMatches() throws IOException {
+		String json = "{\"a\": {\"x\": {\"name\": \"first-deep\"}}, \"b\": {\"name\": \"second\"}, \"c\": {\"name\": \"third\"}}";
+		assertEquals("second", find(json, "name"));
+	}
+
+	@Test
+	public void countsArraysAsLevels() throws IOException {
+		String json = "{\"list\": [{\"name\": \"in-array\"}], \"obj\": {\"o\": {\"name\": \"nested\"}}, \"o\": {\"name\": \"object\"}}";
+		assertEquals("object", find(json, "name"));
+	}
+
+	@Test
+	public void ignoresContainerValues() throws IOException {
+		assertEquals("2", find("{\"name\": {\"name\": {\"x\": 1}}, \"a\": [{\"b\": {\"name\": 2}}]}", "name"));
+		assertNull(find("{\"name\": [1, 2]}", "name"));
+	}
+
+	@Test
+	public void stopsReadingWhenAllFieldsFoundAtTopLevel() throws IOException {
+		// Everything after the matches is malformed and must never be tokenized.
+		try (JsonParser parser = factory.createParser("{\"a\": {\"b\": 1}, \"b\": 2, \"c\": 3, \"rest\": [[[")) {
+			Map<String, String> found = JsonBreadthFirstFinder.findAll(parser, Arrays.asList("b", "c"));
+			assertEquals("2", found.get("b"));
+			assertEquals("3", found.get("c"));
+		}
+	}
+
+	@Test
+	public void resolvesSeveralFields() throws IOException {
+		String json = "{\"x\": {\"a\": 1, \"y\": {\"b\": 2}}, \"b\": 3, \"z\": [{\"a\": 4}]}";
+		List<String> fields = Arrays.asList("a", "b", "missing");
+		Map<String, String> streamed;
+		try (JsonParser parser = factory.createParser(json)) {
+			streamed = JsonBreadthFirstFinder.findAll(parser, fields);
+		}
+		assertEquals("{a=1, b=3}", new TreeMap<>(streamed).toString());
+		assertEquals(new TreeMap<>(streamed), new TreeMap<>(JsonBreadthFirstFinder.findAll(mapper.readTree(json), fields)));
+	}
+
+	@Test
+	public void streamingAgreesWithLevelWalk() throws IOException {
+		Random random = new Random(42);
+		for (int i = 0; i < 200; i++) {
+			String json = randomObject(random, 0);
+			for (String field : new String[] { "k00", "k10", "k20", "k01" }) {
+				assertEquals(json, find(json, field), JsonBreadthFirstFinder.findAll(mapper.readTree(json),
+						Collections.singleton(field)).get(field));
+			}
+		}
+	}
+
+	private String find(String json, String fieldName) throws IOException {
+		try (JsonParser parser = factory.createParser(json)) {
+			return JsonBreadthFirstFinder.findAll(parser, Collections.singleton(fieldName)).get(fieldName);
+		}
+	}
+
+	private String randomObject(Random random, int depth) {
+		StringBuilder json = new StringBuilder("{");
+		// Distinct keys per object, since a parsed tree keeps only one of duplicates.
+		int first = random.nextInt(3);
+		int fields = random.nextInt(5);
+		for (int i = 0; i < fields; i++) {
+			if (i > 0) {
+				json.append(", ");
+			}
+			json.append("\"k").append((first + i) % 3).append(i / 3).append("\": ");
+			int kind = depth > 4 ? 0 : random.nextInt(3);
+			if (kind == 0) {
+				json.append(random.nextInt(100));
+			} else if (kind == 1) {
+				json.append(randomObject(random, depth + 1));
+			} else {
+				json.append("[").append(randomObject(random, depth + 1)).append(", ").append(random.nextInt(100))
+						.append("]");
+			}
+		}
+		return json.append("}").toString();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for JsonDocumentCache.
+ */
+public class JsonDocumentCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	public void returnsCachedTreeForSameVersion() throws IOException {
+		File file = write("a.json", "{\"a\": 1}");
+		JsonDocumentCache cache = new JsonDocumentCache(1024);
+		JsonNode tree = mapper.readTree(file);
+
+		cache.put(JsonDocumentCache.keyFor(file), tree);
+		assertSame(tree, cache.get(JsonDocumentCache.keyFor(file)));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void missesWhenFileChanges() throws IOException {
+		File file = write("a.json", "{\"a\": 1}");
+		JsonDocumentCache cache = new JsonDocumentCache(1024);
+		cache.put(JsonDocumentCache.keyFor(file), mapper.readTree(file));
+
+		write("a.json", "{\"a\": 22}");
+		assertNull(cache.get(JsonDocumentCache.keyFor(file)));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.weight());
+	}
+
+	@Test
+	public void missesWhenOnlyModifiedTimeChanges() throws IOException {
+		File file = write("a.json", "{\"a\": 1}");
+		JsonDocumentCache cache = new JsonDocumentCache(1024);
+		cache.put(JsonDocumentCache.keyFor(file), mapper.readTree(file));
+
+		Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(file.lastModified() - 60000));
+		assertNull(cache.get(JsonDocumentCache.keyFor(file)));
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedByWeight() throws IOException {
+		File a = write("a.json", "{\"a\": 1}");
+		File b = write("b.json", "{\"b\": 2}");
+		File c = write("c.json", "{\"c\": 3}");
+		long oneEntry = a.length() * JsonDocumentCache.BYTES_PER_SOURCE_BYTE;
+		JsonDocumentCache cache = new JsonDocumentCache(oneEntry * 2);
+
+		cache.put(JsonDocumentCache.keyFor(a), mapper.readTree(a));
+		cache.put(JsonDocumentCache.keyFor(b), mapper.readTree(b));
+		// Touch a so that b becomes the eldest entry.
+		assertNotNull(cache.get(JsonDocumentCache.keyFor(a)));
+		cache.put(JsonDocumentCache.keyFor(c), mapper.readTree(c));
+
+		assertEquals(2, cache.size());
+		assertEquals(oneEntry * 2, cache.weight());
+		assertNotNull(cache.get(JsonDocumentCache.keyFor(a)));
+		assertNull(cache.get(JsonDocumentCache.keyFor(b)));
+		assertNotNull(cache.get(JsonDocumentCache.keyFor(c)));
+	}
+
+	@Test
+	public void rejectsDocumentsLargerThanCap() throws IOException {
+		File file = write("a.json", "{\"a\": 1}");
+		JsonDocumentCache cache = new JsonDocumentCache(file.length());
+		JsonDocumentCache.Key key = JsonDocumentCache.keyFor(file);
+
+		assertFalse(cache.accepts(key));
+		cache.put(key, mapper.readTree(file));
+		assertNull(cache.get(key));
+	}
+
+	@Test
+	public void missingFileHasNoKey() throws IOException {
+		assertNull(JsonDocumentCache.keyFor(new File(folder.getRoot(), "missing.json")));
+	}
+
+	private File write(String name, String content) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
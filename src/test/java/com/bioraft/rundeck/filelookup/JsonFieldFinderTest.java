@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for JsonFieldFinder.
+ */
+public class JsonFieldFinderTest {
+
+	private final JsonFactory factory = new JsonFactory();
+
+	@Test
+	public void returnsFirstScalarInDocumentOrder() throws IOException {
+		String json = "{\"a\": {\"key\": {\"key\": \"deep\"}}, \"key\": \"shallow\"}";
+		assertEquals("deep", find(json, "key"));
+	}
+
+	@Test
+	public void ignoresContainerValuesWithoutScalarMatch() throws IOException {
+		String json = "{\"key\": {\"other\": 1}, \"list\": [{\"key\": [1, 2]}, {\"key\": 3}]}";
+		assertEquals("3", find(json, "key"));
+	}
+
+	@Test
+	public void returnsNullWhenNotFound() throws IOException {
+		assertNull(find("{\"a\": [1, {\"b\": 2}]}", "key"));
+	}
+
+	@Test
+	public void stopsReadingAtFirstMatch() throws IOException {
+		// Everything after the match is malformed and must never be tokenized.
+		assertEquals("found", find("{\"key\": \"found\", \"rest\": [[[", "key"));
+	}
+
+	@Test
+	public void rendersScalarsLikeTreeModel() throws IOException {
+		String json = "{\"i\": 10021, \"d\": 25.20, \"e\": 1e3, \"t\": true, \"n\": null, \"big\": 123456789012345678901}";
+		ObjectMapper mapper = new ObjectMapper();
+		for (String field : new String[] { "i", "d", "e", "t", "n", "big" }) {
+			assertEquals(mapper.readTree(json).get(field).asText(), find(json, field));
+		}
+	}
+
+	@Test
+	public void treeSearchMatchesStreamingSearch() throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		String json = "{\"key\": {\"other\": 1}, \"list\": [{\"key\": [1, 2]}, {\"a\": {\"key\": 3}}], \"key2\": 4}";
+		for (String field : new String[] { "key", "other", "a", "key2", "missing" }) {
+			assertEquals(find(json, field), JsonFieldFinder.findFirst(mapper.readTree(json), field));
+		}
+	}
+
+	@Test
+	public void findsDeepestRepeatedKeyInOnePass() throws IOException {
+		// Twenty levels of "labels" inside "labels", each level with a sibling
+		// subtree that repeats the key, and a shallow match after all of it.
+		int depth = 20;
+		StringBuilder json = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			json.append("{\"sibling\": {\"labels\": {\"level\": ").append(i).append("}}, \"labels\": ");
+		}
+		json.append("{\"labels\": \"bottom\"}");
+		for (int i = 0; i < depth; i++) {
+			json.append(", \"labels2\": \"x\"}");
+		}
+		String document = "{\"root\": " + json + ", \"labels\": \"shallow\"}";
+
+		assertEquals("bottom", find(document, "labels"));
+		assertEquals("bottom", JsonFieldFinder.findFirst(new ObjectMapper().readTree(document), "labels"));
+		assertEquals("0", JsonFieldFinder.findFirst(new ObjectMapper().readTree(document), "level"));
+	}
+
+	@Test
+	public void resolvesSeveralFieldsInOnePass() throws IOException {
+		String json = "{\"a\": {\"key\": 1}, \"other\": \"x\", \"key\": 2, \"last\": [{\"other\": \"y\"}]}";
+		List<String> fields = Arrays.asList("other", "key", "missing");
+		Map<String, String> expected = new HashMap<>();
+		expected.put("key", "1");
+		expected.put("other", "x");
+
+		try (JsonParser parser = factory.createParser(json)) {
+			assertEquals(expected, JsonFieldFinder.findAll(parser, fields));
+		}
+		assertEquals(expected, JsonFieldFinder.findAll(new ObjectMapper().readTree(json), fields));
+	}
+
+	@Test
+	public void stopsReadingWhenAllFieldsFound() throws IOException {
+		try (JsonParser parser = factory.createParser("{\"b\": 2, \"a\": {\"c\": true}, \"rest\": [[[")) {
+			Map<String, String> found = JsonFieldFinder.findAll(parser, Arrays.asList("b", "c"));
+			assertEquals("2", found.get("b"));
+			assertEquals("true", found.get("c"));
+			assertEquals(2, found.size());
+		}
+	}
+
+	private String find(String json, String fieldName) throws IOException {
+		try (JsonParser parser = factory.createParser(json)) {
+			return JsonFieldFinder.findFirst(parser, fieldName);
+		}
+	}
+}
@@ -16,11 +16,15 @@
 package com.bioraft.rundeck.filelookup;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -37,6 +41,7 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import com.dtolabs.rundeck.core.execution.workflow.SharedOutputContext;
 import com.dtolabs.rundeck.core.execution.workflow.steps.StepException;
+import com.dtolabs.rundeck.core.execution.workflow.steps.StepFailureReason;
 import com.dtolabs.rundeck.plugins.step.PluginStepContext;
 
 /**
@@ -192,6 +197,97 @@ public class JsonFindValueStepPluginTest {
 		assertEquals("true", values.get(i));
 	}
 
+	@Test
+	public void returnsValuesForSeveralFields() throws StepException {
+		configuration.put("fields", "firstName, surname=lastName");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		this.plugin.executeStep(context, configuration);
+		verify(sharedOutputContext, times(3)).addOutput(groupCaptor.capture(), nameCaptor.capture(), valueCaptor.capture());
+
+		assertEquals(Arrays.asList("key", "firstName", "surname"), nameCaptor.getAllValues());
+		assertEquals(Arrays.asList("v1", "John", "Smith"), valueCaptor.getAllValues());
+	}
+
+	@Test
+	public void returnsValueAtFieldPath() throws StepException {
+		configuration.put("fieldPath", "$.phoneNumbers[1].address");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		this.plugin.executeStep(context, configuration);
+		verify(sharedOutputContext, times(1)).addOutput(groupCaptor.capture(), nameCaptor.capture(), valueCaptor.capture());
+
+		assertEquals(Arrays.asList("key"), nameCaptor.getAllValues());
+		assertEquals(Arrays.asList("work"), valueCaptor.getAllValues());
+	}
+
+	@Test
+	public void rejectsFieldPathWithFields() {
+		configuration.put("fieldPath", "$.phoneNumbers[1].address");
+		configuration.put("fields", "city");
+
+		try {
+			this.plugin.executeStep(context, configuration);
+			fail("Expected Field Path with Fields to be rejected");
+		} catch (StepException e) {
+			assertEquals(StepFailureReason.ConfigurationFailure, e.getFailureReason());
+		}
+		verify(context, never()).getOutputContext();
+	}
+
+	@Test
+	public void returnsShallowestValueBreadthFirst() throws StepException {
+		configuration.put("fieldName", "address");
+		configuration.put("fields", "one");
+		configuration.put("searchOrder", "breadth-first");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		this.plugin.executeStep(context, configuration);
+		verify(sharedOutputContext, times(2)).addOutput(groupCaptor.capture(), nameCaptor.capture(), valueCaptor.capture());
+
+		assertEquals(Arrays.asList("key", "one"), nameCaptor.getAllValues());
+		assertEquals(Arrays.asList("school", "1"), valueCaptor.getAllValues());
+	}
+
+	@Test(expected = StepException.class)
+	public void invalidFieldPathThrowsException() throws StepException {
+		configuration.put("fieldPath", "$..address");
+		this.plugin.executeStep(context, configuration);
+	}
+
+	@Test(expected = StepException.class)
+	public void noFieldsThrowsException() throws StepException {
+		configuration.remove("fieldName");
+		this.plugin.executeStep(context, configuration);
+	}
+
+	@Test
+	public void rejectsTimeoutThatIsNotANumber() {
+		configuration.put("timeout", "soon");
+
+		try {
+			this.plugin.executeStep(context, configuration);
+			fail("Expected the timeout to be rejected");
+		} catch (StepException e) {
+			assertEquals(StepFailureReason.ConfigurationFailure, e.getFailureReason());
+			assertEquals("Option 'Timeout' must be a whole number, not 'soon'", e.getMessage());
+		}
+		verify(context, never()).getOutputContext();
+	}
+
+	@Test
+	public void failsWhenOutOfBytes() {
+		configuration.put("maxBytes", "16");
+		configuration.put("engine", "stream");
+		when(context.getLogger()).thenReturn(logger);
+
+		try {
+			this.plugin.executeStep(context, configuration);
+			fail("Expected the lookup to run out of bytes");
+		} catch (StepException e) {
+			assertEquals(FileLookupFailureReason.BUDGET_EXCEEDED, e.getFailureReason());
+			assertTrue(e.getMessage(), e.getMessage().endsWith("Max Bytes (16) reached"));
+		}
+		verify(context, never()).getOutputContext();
+	}
+
 	@Test
 	public void notCalledOnNoMatch() throws StepException {
 		configuration.put("fieldName", "no_such_key");
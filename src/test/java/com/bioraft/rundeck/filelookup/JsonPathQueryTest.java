@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for JsonPathQuery.
+ */
+public class JsonPathQueryTest {
+
+	private static final String DOCUMENT = "{\"type\": \"service\", \"launchConfig\": {\"type\": \"container\", "
+			+ "\"environment\": {\"SITE\": \"example\", \"a/b\": 1}, \"ports\": [\"80:80\", \"443:443\"]}, "
+			+ "\"instanceIds\": [\"1i1\", \"1i2\"], \"0\": {\"nested\": [[1, 2], {\"x\": null}]}, \"type2\": 2.5}";
+
+	private final JsonFactory factory = new JsonFactory();
+
+	@Test
+	public void compilesJsonPathToPointer() {
+		assertEquals("/launchConfig/environment/SITE",
+				JsonPathQuery.compile("$.launchConfig.environment.SITE").pointer().toString());
+		assertEquals("/instanceIds/0", JsonPathQuery.compile("$.instanceIds[0]").pointer().toString());
+		assertEquals("/launchConfig/environment/a~1b",
+				JsonPathQuery.compile("$['launchConfig'][\"environment\"]['a/b']").pointer().toString());
+		assertEquals("", JsonPathQuery.compile("$").pointer().toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsWildcards() {
+		JsonPathQuery.compile("$.instanceIds[*]");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsRecursiveDescent() {
+		JsonPathQuery.compile("$..type");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsBareNames() {
+		JsonPathQuery.compile("type");
+	}
+
+	@Test
+	public void findsValuesAtPath() throws IOException {
+		assertEquals("service", find("/type"));
+		assertEquals("container", find("$.launchConfig.type"));
+		assertEquals("example", find("/launchConfig/environment/SITE"));
+		assertEquals("1", find("$.launchConfig.environment['a/b']"));
+		assertEquals("443:443", find("/launchConfig/ports/1"));
+		assertEquals("1i1", find("$.instanceIds[0]"));
+		assertEquals("2", find("/0/nested/0/1"));
+		assertEquals("null", find("/0/nested/1/x"));
+		assertEquals("2.5", find("/type2"));
+	}
+
+	@Test
+	public void returnsNullForMissingOrContainerValues() throws IOException {
+		for (String path : new String[] { "/missing", "/launchConfig", "/instanceIds/2", "/instanceIds/x",
+				"/type/deeper", "/launchConfig/ports/0/x", "" }) {
+			assertNull(path, find(path));
+		}
+	}
+
+	@Test
+	public void stopsReadingAtValue() throws IOException {
+		// Everything after the value is malformed and must never be tokenized.
+		try (JsonParser parser = factory.createParser("{\"skip\": {\"a\": [1, {\"b\": 2}]}, \"key\": [0, \"found\", [[[")) {
+			assertEquals("found", JsonPathQuery.compile("/key/1").search(parser));
+		}
+	}
+
+	private String find(String path) throws IOException {
+		JsonPathQuery query = JsonPathQuery.compile(path);
+		String tree = query.search(new ObjectMapper().readTree(DOCUMENT));
+		try (JsonParser parser = factory.createParser(DOCUMENT)) {
+			String streamed = query.search(parser);
+			assertEquals(path, tree, streamed);
+			return streamed;
+		}
+	}
+}
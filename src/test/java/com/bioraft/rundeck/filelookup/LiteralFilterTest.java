@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for LiteralFilter.
+ */
+public class LiteralFilterTest {
+
+	@Test
+	public void extractsRequiredLiterals() {
+		assertLiteral("DB_HOST=", "^DB_HOST=(.*)");
+		assertLiteral("\": \"", "\"(name|state)\": \"([a-z]+)\"");
+		assertLiteral("com.example.label2: ", "com[.]example[.]label2: (.*)");
+		assertLiteral("version=", "\\s+version=(\\S+)");
+		assertLiteral("a.b", "a\\.b");
+		assertLiteral("literal(", "\\Qliteral(\\E\\d");
+		assertLiteral("abc", "abcd?e");
+		assertLiteral("abcd", "abcd+e");
+		assertLiteral("xyz", "(ab)+xyz");
+		assertLiteral("key", "\\x41key\\u0042");
+	}
+
+	@Test
+	public void findsNothingWhenNoLiteralIsCertain() {
+		assertLiteral(null, "^(DB_HOST|DB_PORT)=(.*)");
+		assertLiteral(null, "a|bcdef");
+		assertLiteral(null, "(?i)db_host=(.*)");
+		assertLiteral(null, "[a-z]+=\\d+");
+		assertLiteral(null, "x*y?");
+		assertLiteral(null, "k(ey)?");
+		assertNull(LiteralFilter.forPattern(Pattern.compile("db_host=(.*)", Pattern.CASE_INSENSITIVE)));
+	}
+
+	@Test
+	public void searchesCharsAndBytes() {
+		LiteralFilter filter = LiteralFilter.forPattern(Pattern.compile("^DB_HOST=(.*)"));
+		String text = "# DB_HOS DB_HOST=db.example.com";
+		assertEquals(text.indexOf("DB_HOST="), filter.indexIn(text, 0, text.length()));
+		assertFalse(filter.containedIn("DB_PORT=5432"));
+
+		ByteBuffer bytes = ByteBuffer.wrap(("caf\u00e9 " + text).getBytes(StandardCharsets.UTF_8));
+		assertEquals(text.indexOf("DB_HOST=") + 6, filter.indexIn(bytes, 0, bytes.limit()));
+		assertEquals(-1, filter.indexIn(bytes, 0, 10));
+	}
+
+	@Test
+	public void neverRejectsAMatchingLine() {
+		String[] patterns = { "ab+c=(.*)", "x\\.y(z)", "k{2,}v", "\"(a|b)\": \"(.)\"", "q[]r]st", "m(?:no)*pq" };
+		char[] alphabet = "abckqrstmnopvxyz.=\"]: ".toCharArray();
+		Random random = new Random(42);
+		for (String regex : patterns) {
+			Pattern pattern = Pattern.compile(regex);
+			LiteralFilter filter = LiteralFilter.forPattern(pattern);
+			for (int n = 0; n < 20000; n++) {
+				StringBuilder line = new StringBuilder();
+				int length = random.nextInt(12);
+				for (int i = 0; i < length; i++) {
+					line.append(alphabet[random.nextInt(alphabet.length)]);
+				}
+				if (pattern.matcher(line).find()) {
+					assertTrue(regex + " rejected " + line, filter == null || filter.containedIn(line));
+				}
+			}
+		}
+	}
+
+	private void assertLiteral(String expected, String regex) {
+		Pattern.compile(regex);
+		assertEquals(regex, expected, LiteralFilter.requiredLiteral(regex, 0));
+	}
+}
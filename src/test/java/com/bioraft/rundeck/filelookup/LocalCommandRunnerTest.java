@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Tests for LocalCommandRunner.
+ */
+public class LocalCommandRunnerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final LocalCommandRunner runner = new LocalCommandRunner();
+
+	@Test
+	public void streamsOutputLines() throws IOException {
+		File file = folder.newFile("app.env");
+		Files.write(file.toPath(), "HOST=a\r\nVERSION=1\n".getBytes(StandardCharsets.UTF_8));
+		List<String> lines = new ArrayList<>();
+
+		int exit = runner.run(null, Arrays.asList("cat", file.getPath()), line -> {
+			lines.add(line.toString());
+			return false;
+		});
+
+		assertEquals(0, exit);
+		assertEquals(Arrays.asList("HOST=a", "VERSION=1"), lines);
+	}
+
+	@Test(timeout = 10000)
+	public void stopsCommandOnceVisitorIsDone() throws IOException {
+		List<String> lines = new ArrayList<>();
+
+		int exit = runner.run(null, Arrays.asList("yes", "line"), line -> {
+			lines.add(line.toString());
+			return lines.size() == 3;
+		});
+
+		assertEquals(0, exit);
+		assertEquals(3, lines.size());
+	}
+
+	@Test
+	public void returnsExitCode() throws IOException {
+		assertNotEquals(0, runner.run(null, Arrays.asList("cat", "no_such_file"), line -> false));
+	}
+
+	@Test(expected = IOException.class)
+	public void missingCommandIsAnError() throws IOException {
+		runner.run(null, Collections.singletonList("no-such-command-for-lookup"), line -> false);
+	}
+}
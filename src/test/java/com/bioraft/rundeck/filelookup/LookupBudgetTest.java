@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for LookupBudget.
+ */
+public class LookupBudgetTest {
+
+	@Test
+	public void unlimitedBudgetNeverRunsOut() throws IOException {
+		LookupBudget budget = new LookupBudget(0, 0, 0);
+		assertFalse(budget.isLimited());
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(budget.chargeLine());
+		}
+		assertEquals(1L << 40, budget.reserveBytes(1L << 40));
+		assertEquals(6, drain(budget.limit(stream("a\nb\nc\n"), true)));
+		assertFalse(budget.isExhausted());
+	}
+
+	@Test
+	public void stopsAtMaxLines() {
+		LookupBudget budget = new LookupBudget(0, 2, 0);
+		assertTrue(budget.isLimited());
+		assertTrue(budget.chargeLine());
+		assertTrue(budget.chargeLine());
+		assertFalse(budget.chargeLine());
+		assertFalse(budget.chargeLine());
+		assertTrue(budget.isExhausted());
+		assertTrue(budget.progress(), budget.progress().startsWith("stopped after 0 bytes, 2 lines and "));
+		assertTrue(budget.progress(), budget.progress().endsWith(": Max Lines (2) reached"));
+	}
+
+	@Test
+	public void reservesWhatIsLeftOfMaxBytes() {
+		LookupBudget budget = new LookupBudget(100, 0, 0);
+		assertEquals(60, budget.reserveBytes(60));
+		assertFalse(budget.isExhausted());
+		assertEquals(40, budget.reserveBytes(60));
+		assertTrue(budget.isExhausted());
+		assertEquals(0, budget.reserveBytes(60));
+		assertTrue(budget.progress(), budget.progress().startsWith("stopped after 100 bytes, 0 lines"));
+	}
+
+	@Test
+	public void streamFailsPastMaxBytes() throws IOException {
+		LookupBudget budget = new LookupBudget(4, 0, 0);
+		InputStream stream = budget.limit(stream("abc\ndef\n"), false);
+		byte[] buffer = new byte[3];
+		assertEquals(3, stream.read(buffer));
+		try {
+			drain(stream);
+			fail("Expected the budget to run out");
+		} catch (LookupBudgetException e) {
+			assertTrue(e.getMessage(), e.getMessage().endsWith("Max Bytes (4) reached"));
+		}
+		assertTrue(budget.isExhausted());
+	}
+
+	@Test
+	public void streamCountsLineBreaksAsLines() throws IOException {
+		LookupBudget budget = new LookupBudget(0, 2, 0);
+		InputStream stream = budget.limit(stream("a\nb\n"), true);
+		assertEquals(4, drain(stream));
+		assertFalse(budget.isExhausted());
+
+		try {
+			drain(budget.limit(stream("c\n"), true));
+			fail("Expected the budget to run out");
+		} catch (LookupBudgetException e) {
+			// Lines past the limit are not counted.
+			assertTrue(e.getMessage(), e.getMessage().contains(" 2 lines"));
+			assertTrue(e.getMessage(), e.getMessage().endsWith("Max Lines (2) reached"));
+		}
+	}
+
+	@Test
+	public void countsSkippedLinesOnlyWithLineLimit() {
+		LookupBudget unlimitedLines = new LookupBudget(100, 0, 0);
+		assertTrue(unlimitedLines.chargeSkipped("a\nb\nc\n"));
+		assertTrue(unlimitedLines.progress(), unlimitedLines.progress().contains(" 0 lines"));
+
+		LookupBudget budget = new LookupBudget(0, 4, 0);
+		assertTrue(budget.chargeSkipped("a\r\nb\rc\n"));
+		assertTrue(budget.chargeLine());
+		assertFalse(budget.chargeSkipped("d\ne\n"));
+		assertTrue(budget.isExhausted());
+		assertTrue(budget.progress(), budget.progress().contains(" 4 lines"));
+	}
+
+	@Test
+	public void skippedTextChecksDeadline() throws InterruptedException {
+		LookupBudget budget = new LookupBudget(0, 0, 1);
+		Thread.sleep(20);
+		assertFalse(budget.chargeSkipped("no line breaks"));
+		assertTrue(budget.progress(), budget.progress().endsWith(": Timeout (0.001 s) reached"));
+	}
+
+	@Test
+	public void stopsAtDeadline() throws InterruptedException {
+		LookupBudget budget = new LookupBudget(0, 0, 1);
+		Thread.sleep(20);
+		assertFalse(budget.chargeLine());
+		assertTrue(budget.isExhausted());
+		assertTrue(budget.progress(), budget.progress().endsWith(": Timeout (0.001 s) reached"));
+	}
+
+	@Test
+	public void streamFailsAtDeadline() throws InterruptedException {
+		LookupBudget budget = new LookupBudget(0, 0, 1);
+		Thread.sleep(20);
+		try {
+			budget.limit(stream("a"), false).read();
+			fail("Expected the budget to run out");
+		} catch (IOException e) {
+			assertTrue(e instanceof LookupBudgetException);
+		}
+	}
+
+	private static InputStream stream(String content) {
+		return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static int drain(InputStream stream) throws IOException {
+		int total = 0;
+		byte[] buffer = new byte[2];
+		int read;
+		while ((read = stream.read(buffer)) >= 0) {
+			total += read;
+		}
+		return total;
+	}
+}
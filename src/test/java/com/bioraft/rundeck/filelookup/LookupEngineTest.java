@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.execution.ExecutionContext;
+import com.dtolabs.rundeck.core.execution.workflow.SharedOutputContext;
+import com.dtolabs.rundeck.plugins.PluginLogger;
+import com.dtolabs.rundeck.plugins.step.PluginStepContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static com.bioraft.rundeck.filelookup.LookupEngine.*;
+import static com.dtolabs.rundeck.core.Constants.DEBUG_LEVEL;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for LookupEngine and the engines FileLookupUtils reads with.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class LookupEngineTest {
+
+	private static final long MB = 1024L * 1024;
+
+	private static final long THRESHOLD = FileLookupUtils.MAPPED_SCAN_THRESHOLD;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Mock
+	PluginStepContext context;
+
+	@Mock
+	PluginLogger logger;
+
+	@Mock
+	SharedOutputContext sharedOutputContext;
+
+	@Mock
+	ExecutionContext executionContext;
+
+	@Test
+	public void readsOption() {
+		assertEquals(MAPPED, LookupEngine.of(" Mapped "));
+		assertEquals(AUTO, LookupEngine.of(""));
+		assertEquals(AUTO, LookupEngine.of(null));
+		assertEquals(AUTO, LookupEngine.of("fastest"));
+		assertEquals("stream", STREAM.option());
+	}
+
+	@Test
+	public void jsonTreeOnlyWhenItFits() {
+		long heap = 1024 * MB;
+		assertEquals(TREE, LookupEngine.forJson(AUTO, false, true, false, 10 * MB, heap));
+		assertEquals(STREAM, LookupEngine.forJson(AUTO, false, false, false, 10 * MB, heap));
+		assertEquals(STREAM, LookupEngine.forJson(AUTO, true, true, false, 1024, heap));
+		assertEquals(STREAM, LookupEngine.forJson(AUTO, false, true, false, 10 * MB, 100 * MB));
+	}
+
+	@Test
+	public void largePathQueriesStream() {
+		long heap = 1024 * MB;
+		assertEquals(TREE, LookupEngine.forJson(AUTO, false, true, true, 1024, heap));
+		assertEquals(STREAM, LookupEngine.forJson(AUTO, false, true, true, 10 * MB, heap));
+	}
+
+	@Test
+	public void forcedJsonEngineIsUsed() {
+		assertEquals(TREE, LookupEngine.forJson(TREE, true, false, true, 10 * MB, 0));
+		assertEquals(STREAM, LookupEngine.forJson(STREAM, false, true, false, 1024, 1024 * MB));
+		assertEquals(TREE, LookupEngine.forJson(READER, false, true, false, 1024, 1024 * MB));
+	}
+
+	@Test
+	public void scanEngineFollowsSizeAndShape() {
+		assertEquals(READER, LookupEngine.forScan(AUTO, 1024, true, false, true, 4, THRESHOLD));
+		assertEquals(MAPPED, LookupEngine.forScan(AUTO, THRESHOLD, true, false, true, 1, THRESHOLD));
+		assertEquals(MAPPED, LookupEngine.forScan(AUTO, THRESHOLD, true, false, true, 4, THRESHOLD));
+		assertEquals(PARALLEL, LookupEngine.forScan(AUTO, THRESHOLD, true, false, false, 4, THRESHOLD));
+		assertEquals(READER, LookupEngine.forScan(AUTO, THRESHOLD, false, false, false, 4, THRESHOLD));
+		assertEquals(REVERSE, LookupEngine.forScan(AUTO, THRESHOLD, true, true, false, 4, THRESHOLD));
+	}
+
+	@Test
+	public void forcedScanEngineIsUsedWhereFileAllows() {
+		assertEquals(MAPPED, LookupEngine.forScan(MAPPED, 1024, true, false, true, 1, THRESHOLD));
+		assertEquals(PARALLEL, LookupEngine.forScan(PARALLEL, 1024, true, false, true, 1, THRESHOLD));
+		assertEquals(READER, LookupEngine.forScan(READER, THRESHOLD, true, false, false, 4, THRESHOLD));
+		assertEquals(READER, LookupEngine.forScan(MAPPED, 1024, false, false, true, 1, THRESHOLD));
+		assertEquals(REVERSE, LookupEngine.forScan(PARALLEL, 1024, true, true, true, 1, THRESHOLD));
+	}
+
+	@Test
+	public void logsChosenEngineAtDebugLevel() throws IOException {
+		File file = write("app.env", "HOST=db\n");
+		FileLookupUtils subject = debugLogging();
+		subject.scanPropertiesFile(file.getPath(), "data", "host", "^HOST=(.*)", false);
+
+		verify(logger).log(DEBUG_LEVEL, "Reading '" + file.getPath() + "' with the reader engine");
+		verify(sharedOutputContext).addOutput("data", "host", "db");
+	}
+
+	@Test
+	public void usesForcedScanEngine() throws IOException {
+		File file = write("app.env", "HOST=db\n");
+		FileLookupUtils subject = debugLogging();
+		subject.setEngine(PARALLEL);
+		subject.scanPropertiesFile(file.getPath(), "data", "host", "^HOST=(.*)", false);
+
+		verify(logger).log(DEBUG_LEVEL, "Reading '" + file.getPath() + "' with the parallel engine");
+		verify(sharedOutputContext).addOutput("data", "host", "db");
+	}
+
+	@Test
+	public void notesForcedEngineThatCannotReadFile() throws IOException {
+		File file = write("app.env", "HOST=d\u00e9\n");
+		FileLookupUtils subject = debugLogging();
+		subject.setEngine(MAPPED);
+		subject.scanPropertiesFile(file.getPath(), "data", "host", "^HOST=(d\u00e9)", false);
+
+		verify(logger).log(DEBUG_LEVEL,
+				"Reading '" + file.getPath() + "' with the reader engine (mapped cannot read this file)");
+	}
+
+	@Test
+	public void forcedStreamBypassesDocumentCache() throws IOException {
+		File file = write("service.json", "{\"state\": \"active\"}");
+		FileLookupUtils subject = debugLogging();
+		subject.documentCache = new JsonDocumentCache(MB);
+		subject.setEngine(STREAM);
+		subject.scanJsonFile(file.getPath(), "state", "data", "state", false);
+
+		verify(logger).log(DEBUG_LEVEL, "Reading '" + file.getPath() + "' with the stream engine");
+		verify(sharedOutputContext).addOutput("data", "state", "active");
+		assertEquals(0, subject.documentCache.size());
+
+		subject.setEngine(AUTO);
+		subject.scanJsonFile(file.getPath(), "state", "data", "state", false);
+		verify(logger).log(DEBUG_LEVEL, "Reading '" + file.getPath() + "' with the tree engine");
+		assertEquals(1, subject.documentCache.size());
+	}
+
+	private FileLookupUtils debugLogging() {
+		when(context.getLogger()).thenReturn(logger);
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		when(context.getExecutionContext()).thenReturn(executionContext);
+		when(executionContext.getLoglevel()).thenReturn(DEBUG_LEVEL);
+		return new FileLookupUtils(context);
+	}
+
+	private File write(String name, String content) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.execution.ExecutionContext;
+import com.dtolabs.rundeck.core.execution.workflow.SharedOutputContext;
+import com.dtolabs.rundeck.plugins.PluginLogger;
+import com.dtolabs.rundeck.plugins.step.PluginStepContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static com.dtolabs.rundeck.core.Constants.DEBUG_LEVEL;
+import static com.dtolabs.rundeck.core.Constants.INFO_LEVEL;
+import static com.dtolabs.rundeck.core.Constants.VERBOSE_LEVEL;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for LookupMetrics and the metrics FileLookupUtils reports.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class LookupMetricsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Mock
+	PluginStepContext context;
+
+	@Mock
+	PluginLogger logger;
+
+	@Mock
+	SharedOutputContext sharedOutputContext;
+
+	@Mock
+	ExecutionContext executionContext;
+
+	@Test
+	public void countsBytesReadThroughStream() throws IOException {
+		LookupMetrics metrics = new LookupMetrics();
+		try (InputStream in = metrics.count(new ByteArrayInputStream(new byte[100]))) {
+			assertEquals(0, in.read());
+			assertEquals(10, in.skip(10));
+			assertEquals(89, in.read(new byte[200]));
+			assertEquals(-1, in.read());
+		}
+		assertEquals(100, metrics.bytesRead());
+	}
+
+	@Test
+	public void listsMetricsInFixedOrder() {
+		LookupMetrics metrics = new LookupMetrics();
+		metrics.addFile();
+		metrics.addLines(3);
+		metrics.addParseNanos(1500000);
+		assertEquals("files=1 bytesRead=0 lines=3 matches=0 parseMillis=1.500 searchMillis=0.000 cacheHits=0 "
+				+ "cacheMisses=0 coalesced=0", metrics.toString());
+	}
+
+	@Test
+	public void levelOptionDefaultsToDebug() {
+		assertEquals(DEBUG_LEVEL, FileLookupUtils.metricsLevel("debug"));
+		assertEquals(VERBOSE_LEVEL, FileLookupUtils.metricsLevel("Verbose"));
+		assertEquals(INFO_LEVEL, FileLookupUtils.metricsLevel("info"));
+		assertEquals(FileLookupUtils.METRICS_OFF, FileLookupUtils.metricsLevel("off"));
+		assertEquals(DEBUG_LEVEL, FileLookupUtils.metricsLevel(null));
+	}
+
+	@Test
+	public void recordsScanMetrics() throws IOException {
+		File file = write("app.log", "a=1\nb=2\nc=3\n");
+		when(context.getLogger()).thenReturn(logger);
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		FileLookupUtils subject = new FileLookupUtils(context);
+		subject.scanPropertiesFile(file.getPath(), "data", "name", "^([ab])=(\\d)$", false);
+
+		Map<String, String> metrics = subject.metrics.asMap();
+		assertEquals("1", metrics.get("files"));
+		assertEquals(Long.toString(file.length()), metrics.get("bytesRead"));
+		assertEquals("3", metrics.get("lines"));
+		assertEquals("2", metrics.get("matches"));
+	}
+
+	@Test
+	public void logsAtConfiguredLevelAndWritesOutputs() throws IOException {
+		File file = write("app.log", "a=1\n");
+		when(context.getLogger()).thenReturn(logger);
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		when(context.getExecutionContext()).thenReturn(executionContext);
+		when(executionContext.getLoglevel()).thenReturn(INFO_LEVEL);
+		FileLookupUtils subject = new FileLookupUtils(context);
+		subject.setMetricsLevel(INFO_LEVEL);
+		subject.setMetricsOutput(true);
+		subject.scanPropertiesFile(file.getPath(), "data", "name", "^a=(\\d)$", false);
+
+		verify(logger).log(eq(INFO_LEVEL), startsWith("Lookup metrics for '" + file.getPath() + "': files=1 "));
+		verify(sharedOutputContext).addOutput("data", "__metrics.files", "1");
+		verify(sharedOutputContext).addOutput("data", "__metrics.matches", "1");
+		verify(sharedOutputContext).addOutput("data", "__metrics.cacheHits", "0");
+	}
+
+	@Test
+	public void skipsMetricsBelowExecutionLogLevel() throws IOException {
+		File file = write("app.log", "a=1\n");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		when(context.getExecutionContext()).thenReturn(executionContext);
+		when(executionContext.getLoglevel()).thenReturn(INFO_LEVEL);
+		FileLookupUtils subject = new FileLookupUtils(context);
+		subject.setMetricsLevel(DEBUG_LEVEL);
+		subject.scanPropertiesFile(file.getPath(), "data", "name", "^a=(\\d)$", false);
+		verify(context, never()).getLogger();
+		verify(sharedOutputContext).addOutput("data", "name", "1");
+		verifyNoMoreInteractions(sharedOutputContext);
+	}
+
+	@Test
+	public void recordsJsonCacheHitsAndParseTime() throws IOException {
+		File file = write("service.json", "{\"name\": \"frontend\"}");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		FileLookupUtils subject = new FileLookupUtils(context);
+		subject.documentCache = new JsonDocumentCache(JsonDocumentCache.DEFAULT_MAX_BYTES);
+
+		subject.scanJsonFile(file.getPath(), "name", "group", "name", false);
+		assertEquals("0", subject.metrics.asMap().get("cacheHits"));
+		assertEquals("1", subject.metrics.asMap().get("cacheMisses"));
+		assertEquals(file.length(), subject.metrics.bytesRead());
+
+		subject.scanJsonFile(file.getPath(), "name", "group", "name", false);
+		assertEquals(1, subject.metrics.cacheHits());
+		assertEquals(0, subject.metrics.bytesRead());
+	}
+
+	private File write(String name, String content) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
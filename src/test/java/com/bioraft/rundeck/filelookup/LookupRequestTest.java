@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for LookupRequest.
+ */
+public class LookupRequestTest {
+
+	@Test
+	public void configurationOverridesDefaults() {
+		Map<String, Object> configuration = new HashMap<>();
+		configuration.put("path", "/tmp/app.env");
+		configuration.put("group", "app");
+		configuration.put("searchOrder", Constants.BREADTH_FIRST);
+		configuration.put("fromEnd", "true");
+		configuration.put("parallelism", "4");
+		configuration.put("metricsOutput", true);
+
+		LookupRequest request = LookupRequest.builder(configuration).path("default.env").group("data")
+				.name("key").searchOrder(Constants.DEPTH_FIRST).fromEnd(false).parallelism(1)
+				.metricsOutput(false).build();
+
+		assertEquals("/tmp/app.env", request.getPath());
+		assertEquals("app", request.getGroup());
+		assertEquals("key", request.getName());
+		assertTrue(request.isBreadthFirst());
+		assertTrue(request.isFromEnd());
+		assertEquals(4, request.getParallelism());
+		assertTrue(request.isMetricsOutput());
+	}
+
+	@Test
+	public void rejectsNumericOptionThatIsNotANumber() {
+		Map<String, Object> configuration = new HashMap<>();
+		configuration.put("maxLines", "10k");
+
+		try {
+			LookupRequest.builder(configuration).maxLines(0).build();
+			fail("Expected Max Lines to be rejected");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Option 'Max Lines' must be a whole number, not '10k'", e.getMessage());
+		}
+	}
+
+	@Test
+	public void unsetDefaultsBecomeEmpty() {
+		LookupRequest request = LookupRequest.builder(new HashMap<>()).path(null).group(null)
+				.elevateToGlobal(false).build();
+
+		assertEquals("", request.getPath());
+		assertEquals("", request.getGroup());
+		assertEquals("", request.getFieldPath());
+		assertFalse(request.isElevateToGlobal());
+		assertFalse(request.isBreadthFirst());
+		assertFalse(request.isIncremental());
+		assertEquals(1, request.getParallelism());
+		assertEquals(Constants.METRICS_LEVEL_DEBUG, request.getMetricsLevel());
+	}
+
+	@Test
+	public void buildsTargetsFromPatternOptions() {
+		Map<String, Object> configuration = new HashMap<>();
+		configuration.put("regex", "^VERSION=(.*)");
+		configuration.put("patterns", "db.host=^DB_HOST=(.*)");
+
+		List<ScanTarget> targets = LookupRequest.builder(configuration).group("data").name("version")
+				.regex(null).patterns(null).build().targets();
+
+		assertEquals(2, targets.size());
+		assertEquals("version", targets.get(0).getName());
+		assertEquals("db", targets.get(1).getGroup());
+		assertEquals("host", targets.get(1).getName());
+	}
+
+	@Test
+	public void buildsLookupsFromFieldOptions() {
+		Map<String, Object> configuration = new HashMap<>();
+		configuration.put("fieldName", "state");
+		configuration.put("fields", "image=imageUuid");
+
+		LookupRequest request = LookupRequest.builder(configuration).name("status").fieldName(null)
+				.fields(null).build();
+
+		assertEquals("state", request.lookups(true).get("status"));
+		assertEquals("imageUuid", request.lookups(true).get("image"));
+		assertFalse(request.lookups(false).containsKey("status"));
+		assertEquals(1, request.lookups(false).size());
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for MappedFileScanner.
+ */
+public class MappedFileScannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String[] CONTENTS = {
+			"",
+			"one line without terminator",
+			"a\nbb\nccc\n",
+			"a\r\nbb\r\n\r\nccc",
+			"mac\rstyle\rlines\r",
+			"\n\n\nlast",
+			"a very long line that is wider than every window used in these tests\nshort\n",
+	};
+
+	@Test
+	public void splitsLinesLikeBufferedReader() throws IOException {
+		for (String content : CONTENTS) {
+			File file = write(content);
+			for (long window : new long[] { 1, 2, 3, 5, 8, 1024 }) {
+				assertEquals("window " + window + " for " + content, readerLines(content), mappedLines(file, window));
+			}
+		}
+	}
+
+	@Test
+	public void filteredScanVisitsOnlyLinesWithLiteral() throws IOException {
+		LiteralFilter filter = LiteralFilter.forPattern(Pattern.compile("key=(.*)"));
+		String[] contents = {
+				"",
+				"key=1",
+				"a\nkey=2\nb\r\nkey=3\r\n",
+				"no\rkey=4\rmore\r",
+				"skip this line\nand this one\nkey=5 is here\nkey=6\n",
+				"a long line before the key=7 literal that spans windows\r\nkey=8",
+		};
+		for (String content : contents) {
+			File file = write(content);
+			List<String> expected = new ArrayList<>();
+			for (String line : readerLines(content)) {
+				if (line.contains("key=")) {
+					expected.add(line);
+				}
+			}
+			for (long window : new long[] { 1, 2, 3, 5, 8, 1024 }) {
+				List<String> lines = new ArrayList<>();
+				new MappedFileScanner(window).scan(file.toPath(), line -> {
+					lines.add(line.toString());
+					return false;
+				}, filter);
+				assertEquals("window " + window + " for " + content, expected, lines);
+			}
+		}
+	}
+
+	@Test
+	public void stopsWhenVisitorReturnsTrue() throws IOException {
+		File file = write("a\nb\nc\n");
+		List<String> seen = new ArrayList<>();
+		new MappedFileScanner(2).scan(file.toPath(), line -> {
+			seen.add(line.toString());
+			return line.toString().equals("b");
+		});
+		assertEquals(2, seen.size());
+	}
+
+	@Test
+	public void linesAreDecodedBeforeMatching() throws IOException {
+		// The UTF-8 encoding of \u00c5 ends in 0x85, a line terminator if read as one char per byte.
+		File file = write("city=Z\u00fcrich\nname=\u0141\u00f3d\u017a\nDB_HOST=\u00c5land\n");
+		Pattern pattern = Pattern.compile("^(\\w+)=(.*)$");
+		List<String> values = new ArrayList<>();
+		new MappedFileScanner(4, new LineDecoder(StandardCharsets.UTF_8)).scan(file.toPath(), line -> {
+			Matcher matcher = pattern.matcher(line);
+			assertTrue(matcher.find());
+			values.add(matcher.group(2));
+			return false;
+		});
+		assertEquals("Z\u00fcrich", values.get(0));
+		assertEquals("\u0141\u00f3d\u017a", values.get(1));
+		assertEquals("\u00c5land", values.get(2));
+	}
+
+	@Test
+	public void filteredLinesAreDecodedBeforeMatching() throws IOException {
+		File file = write("DB_PORT=1\nDB_HOST=\u00c5land\n");
+		Pattern pattern = Pattern.compile("^DB_HOST=(.*)");
+		List<String> values = new ArrayList<>();
+		new MappedFileScanner(64, new LineDecoder(StandardCharsets.UTF_8)).scan(file.toPath(), line -> {
+			Matcher matcher = pattern.matcher(line);
+			if (matcher.find()) {
+				values.add(matcher.group(1));
+			}
+			return false;
+		}, LiteralFilter.forPattern(pattern));
+		assertEquals("[\u00c5land]", values.toString());
+	}
+
+	@Test
+	public void reportsEveryLineNotVisitedAsSkipped() throws IOException {
+		StringBuilder content = new StringBuilder();
+		int lines = 0;
+		while (content.length() < 3 * MappedFileScanner.SEARCH_STEP) {
+			content.append(lines % 5000 == 0 ? "DB_HOST=db" : "noise").append(lines).append('\n');
+			lines++;
+		}
+		File file = write(content.toString());
+		long[] visited = { 0 };
+		long[] skipped = { 0 };
+		long[] breaks = { 0 };
+		for (long window : new long[] { 4096, MappedFileScanner.DEFAULT_WINDOW_SIZE }) {
+			visited[0] = 0;
+			skipped[0] = 0;
+			breaks[0] = 0;
+			new MappedFileScanner(window).scan(file.toPath(), new LineVisitor() {
+				@Override
+				public boolean visit(CharSequence line) {
+					visited[0]++;
+					return false;
+				}
+
+				@Override
+				public boolean skipped(CharSequence region) {
+					skipped[0]++;
+					breaks[0] += region.toString().chars().filter(c -> c == '\n').count();
+					return false;
+				}
+			}, LiteralFilter.forPattern(Pattern.compile("^DB_HOST=(.*)")));
+			assertEquals("window " + window, (lines + 4999) / 5000, visited[0]);
+			assertEquals("window " + window, lines, visited[0] + breaks[0]);
+			assertTrue("window " + window, skipped[0] >= 3);
+		}
+	}
+
+	@Test
+	public void skippedRegionCanStopScan() throws IOException {
+		File file = write("noise\nnoise\nDB_HOST=db\n");
+		List<String> values = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(file.toPath())) {
+			assertTrue(new MappedFileScanner().scan(channel, 0, file.length(), new LineVisitor() {
+				@Override
+				public boolean visit(CharSequence line) {
+					values.add(line.toString());
+					return false;
+				}
+
+				@Override
+				public boolean skipped(CharSequence region) {
+					return true;
+				}
+			}, LiteralFilter.forPattern(Pattern.compile("^DB_HOST=(.*)"))));
+		}
+		assertTrue(values.isEmpty());
+	}
+
+	private List<String> mappedLines(File file, long window) throws IOException {
+		List<String> lines = new ArrayList<>();
+		new MappedFileScanner(window).scan(file.toPath(), line -> {
+			lines.add(line.toString());
+			return false;
+		});
+		return lines;
+	}
+
+	private List<String> readerLines(String content) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	private File write(String content) throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.execution.workflow.SharedOutputContext;
+import com.dtolabs.rundeck.plugins.PluginLogger;
+import com.dtolabs.rundeck.plugins.step.PluginStepContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for MultiFileScanner and lookups over several files.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class MultiFileScannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Mock
+	PluginStepContext context;
+
+	@Mock
+	PluginLogger logger;
+
+	@Mock
+	SharedOutputContext sharedOutputContext;
+
+	@Test
+	public void recognisesGlobs() {
+		assertTrue(MultiFileScanner.isGlob("/var/log/app/*.log"));
+		assertTrue(MultiFileScanner.isGlob("tenant-?.json"));
+		assertTrue(MultiFileScanner.isGlob("/etc/{a,b}.yaml"));
+		assertFalse(MultiFileScanner.isGlob("/var/log/app/app.log"));
+	}
+
+	@Test
+	public void expandsDirectoryInSortedOrder() throws IOException {
+		write("b.log", "");
+		write("a.log", "");
+		folder.newFolder("sub");
+		write("sub/c.log", "");
+
+		List<Path> files = MultiFileScanner.expand(folder.getRoot().getPath());
+		assertEquals(Arrays.asList(path("a.log"), path("b.log")), files);
+	}
+
+	@Test
+	public void expandsGlob() throws IOException {
+		write("b.log", "");
+		write("a.log", "");
+		write("a.txt", "");
+		folder.newFolder("sub");
+		write("sub/c.log", "");
+		String root = folder.getRoot().getPath();
+
+		assertEquals(Arrays.asList(path("a.log"), path("b.log")), MultiFileScanner.expand(root + "/*.log"));
+		assertEquals(Collections.singletonList(path("sub/c.log")), MultiFileScanner.expand(root + "/s*/*.log"));
+		assertEquals(Arrays.asList(path("a.log"), path("b.log"), path("sub/c.log")),
+				MultiFileScanner.expand(root + "/**.log"));
+	}
+
+	@Test
+	public void plainPathIsReturnedAsIs() throws IOException {
+		String missing = new File(folder.getRoot(), "missing.log").getPath();
+		assertEquals(Collections.singletonList(new File(missing).toPath()), MultiFileScanner.expand(missing));
+	}
+
+	@Test
+	public void existingFileWithGlobCharactersIsReturnedAsIs() throws IOException {
+		write("app[1].log", "");
+		write("app1.log", "");
+
+		String file = path("app[1].log").toString();
+		assertEquals(Collections.singletonList(path("app[1].log")), MultiFileScanner.expand(file));
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void globWithoutMatchesFails() throws IOException {
+		MultiFileScanner.expand(folder.getRoot().getPath() + "/*.log");
+	}
+
+	@Test
+	public void accumulatesInFileOrder() throws IOException {
+		List<Path> files = Arrays.asList(path("1"), path("2"), path("3"), path("4"));
+		List<String> seen = new ArrayList<>();
+		new MultiFileScanner(4).scan(files, file -> {
+			// Later files finish first.
+			sleep(40 - 10 * Integer.parseInt(file.getFileName().toString()));
+			return file.getFileName().toString();
+		}, name -> {
+			seen.add(name);
+			return false;
+		});
+		assertEquals(Arrays.asList("1", "2", "3", "4"), seen);
+	}
+
+	@Test
+	public void cancelsOutstandingSearchesOnceDecided() throws IOException, InterruptedException {
+		List<Path> files = Arrays.asList(path("1"), path("2"));
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		new MultiFileScanner(2).scan(files, file -> {
+			if (file.endsWith("1")) {
+				await(started);
+			} else {
+				started.countDown();
+				try {
+					Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+				} catch (InterruptedException e) {
+					interrupted.countDown();
+				}
+			}
+			return file;
+		}, file -> true);
+		assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void ignoresFailuresAfterDecision() throws IOException {
+		List<Path> files = Arrays.asList(path("1"), path("2"));
+		new MultiFileScanner(2).scan(files, file -> {
+			if (file.endsWith("2")) {
+				throw new IOException("late");
+			}
+			return file;
+		}, file -> true);
+	}
+
+	@Test(expected = IOException.class)
+	public void reportsFailuresBeforeDecision() throws IOException {
+		List<Path> files = Arrays.asList(path("1"), path("2"));
+		new MultiFileScanner(2).scan(files, file -> {
+			if (file.endsWith("1")) {
+				throw new IOException("early");
+			}
+			return file;
+		}, file -> true);
+	}
+
+	@Test
+	public void firstMatchAcrossGlobWins() throws IOException {
+		write("a.log", "status=starting\n");
+		write("b.log", "status=ready\nhost=b\n");
+		write("c.log", "host=c\n");
+		when(context.getLogger()).thenReturn(logger);
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		FileLookupUtils subject = new FileLookupUtils(context);
+		List<ScanTarget> targets = Arrays.asList(new ScanTarget("data", "status", "^status=(.*)$"),
+				new ScanTarget("data", "host", "^host=(.*)$"));
+		subject.scanPropertiesFile(folder.getRoot().getPath() + "/*.log", targets, false);
+		verify(sharedOutputContext).addOutput("data", "status", "starting");
+		verify(sharedOutputContext).addOutput("data", "host", "b");
+		verify(sharedOutputContext, times(2)).addOutput(anyString(), anyString(), anyString());
+	}
+
+	@Test
+	public void lastMatchAcrossDirectoryWinsFromEnd() throws IOException {
+		write("a.log", "status=starting\nhost=a\n");
+		write("b.log", "status=ready\n");
+		when(context.getLogger()).thenReturn(logger);
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		FileLookupUtils subject = new FileLookupUtils(context);
+		subject.setFromEnd(true);
+		List<ScanTarget> targets = Arrays.asList(new ScanTarget("data", "status", "^status=(.*)$"),
+				new ScanTarget("data", "host", "^host=(.*)$"));
+		subject.scanPropertiesFile(folder.getRoot().getPath(), targets, false);
+		verify(sharedOutputContext).addOutput("data", "status", "ready");
+		verify(sharedOutputContext).addOutput("data", "host", "a");
+	}
+
+	@Test
+	public void jsonFieldsComeFromFirstFileThatHasThem() throws IOException {
+		write("tenant-1.json", "{\"name\": \"one\"}");
+		write("tenant-2.json", "{\"name\": \"two\", \"region\": \"east\"}");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		FileLookupUtils subject = new FileLookupUtils(context);
+		subject.documentCache = new JsonDocumentCache(0);
+		subject.scanJsonFile(folder.getRoot().getPath() + "/tenant-*.json",
+				FileLookupUtils.jsonFields("name", "name", "region"), "group", false);
+		verify(sharedOutputContext).addOutput("group", "name", "one");
+		verify(sharedOutputContext).addOutput("group", "region", "east");
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void logsGlobWithoutMatches() throws IOException {
+		when(context.getLogger()).thenReturn(logger);
+		FileLookupUtils subject = new FileLookupUtils(context);
+		try {
+			subject.scanJsonFile(folder.getRoot().getPath() + "/*.json", "name", "group", "name", false);
+		} finally {
+			verify(logger).log(anyInt(), startsWith("Could not list files"));
+		}
+	}
+
+	private Path path(String name) {
+		return new File(folder.getRoot(), name).toPath();
+	}
+
+	private void write(String name, String content) throws IOException {
+		Files.write(path(name), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(Math.max(millis, 0));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for MultiPatternScan.
+ */
+public class MultiPatternScanTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void stopsWhenEverySingleCapturePatternMatched() {
+		MultiPatternScan scan = scan("^DB_HOST=(.*)", "^DB_PORT=(\\d+)");
+
+		assertFalse(scan.visit("DB_PORT=5432"));
+		assertFalse(scan.visit("DB_PORT=6543"));
+		assertTrue(scan.visit("DB_HOST=db.example.com"));
+		assertEquals("5432", scan.scans().get(1).values().get("data"));
+		assertEquals("db.example.com", scan.scans().get(0).values().get("data"));
+		assertTrue(scan.isComplete());
+	}
+
+	@Test
+	public void neverStopsWithTwoCapturePattern() {
+		MultiPatternScan scan = scan("^APP_VERSION=(.*)", "^(\\w+)_HASH=(\\w+)");
+
+		assertFalse(scan.visit("APP_VERSION=1.2.3"));
+		assertFalse(scan.visit("BUILD_HASH=abc123"));
+		assertFalse(scan.isComplete());
+		assertEquals("abc123", scan.scans().get(1).values().get("BUILD"));
+	}
+
+	@Test
+	public void sharesLiteralOnlyForLonePattern() {
+		assertEquals("DB_HOST=", scan("^DB_HOST=(.*)").filter().literal());
+		assertNull(scan("^DB_HOST=(.*)", "^DB_PORT=(.*)").filter());
+	}
+
+	@Test
+	public void parallelScanMatchesSequentialScan() throws IOException {
+		File file = folder.newFile();
+		try (PrintWriter writer = new PrintWriter(file)) {
+			for (int i = 0; i < 5000; i++) {
+				writer.print("key" + (i * 7 % 10) + "=" + i + "\n");
+			}
+		}
+		String[] regexes = { "^key1=(\\d+)$", "^key7=(4\\d\\d\\d)$", "^(key[12])=(\\d+)$", "absent=(.*)" };
+
+		MultiPatternScan sequential = scan(regexes);
+		new MappedFileScanner().scan(file.toPath(), sequential, sequential.filter());
+		MultiPatternScan parallel = scan(regexes);
+		new ParallelFileScanner(4, 512).scan(file.toPath(), parallel);
+
+		for (int i = 0; i < regexes.length; i++) {
+			assertEquals(regexes[i], sequential.scans().get(i).values(), parallel.scans().get(i).values());
+		}
+		assertEquals("3", parallel.scans().get(0).values().get("data"));
+		assertEquals("4001", parallel.scans().get(1).values().get("data"));
+		assertEquals("[key1, key2]", parallel.scans().get(2).values().keySet().toString());
+	}
+
+	@Test
+	public void copiesShareTheBudget() {
+		PatternScan pattern = new PatternScan(Pattern.compile("^(\\w+)=(\\w+)$"), "data");
+		MultiPatternScan scan = new MultiPatternScan(Arrays.asList(pattern), new LookupBudget(0, 2, 0));
+		MultiPatternScan copy = scan.copy();
+
+		assertFalse(scan.visit("a=1"));
+		assertFalse(copy.visit("b=2"));
+		assertTrue(scan.visit("c=3"));
+		assertFalse(scan.isComplete());
+		scan.merge(copy);
+		assertEquals("{a=1, b=2}", scan.scans().get(0).values().toString());
+		assertEquals(2, scan.lines());
+	}
+
+	private MultiPatternScan scan(String... regexes) {
+		PatternScan[] scans = new PatternScan[regexes.length];
+		for (int i = 0; i < regexes.length; i++) {
+			scans[i] = new PatternScan(Pattern.compile(regexes[i]), "data");
+		}
+		return new MultiPatternScan(Arrays.asList(scans));
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.common.INodeEntry;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for NodeFileScanner.
+ */
+public class NodeFileScannerTest {
+
+	private final INodeEntry node = mock(INodeEntry.class);
+
+	@Test
+	public void grepsForRequiredLiterals() {
+		List<String> command = NodeFileScanner.command("/etc/app.env",
+				Arrays.asList(Pattern.compile("^DB_HOST=(.*)"), Pattern.compile("^VERSION=(.*)")));
+
+		assertEquals(Arrays.asList("grep", "-a", "-h", "-F", "-e", "DB_HOST=", "-e", "VERSION=", "--", "/etc/app.env"),
+				command);
+	}
+
+	@Test
+	public void sendsWholeFileWithoutLiteral() {
+		List<String> command = NodeFileScanner.command("/etc/app.env",
+				Arrays.asList(Pattern.compile("^DB_HOST=(.*)"), Pattern.compile("^(\\w+)=(.*)")));
+
+		assertEquals(Arrays.asList("cat", "--", "/etc/app.env"), command);
+	}
+
+	@Test
+	public void stopsReadingOnceComplete() throws IOException {
+		List<String> sent = new ArrayList<>();
+		NodeCommandRunner runner = (target, command, output) -> {
+			for (String line : Arrays.asList("HOST=a", "HOST=b", "HOST=c")) {
+				sent.add(line);
+				if (output.visit(line)) {
+					return 0;
+				}
+			}
+			return 0;
+		};
+		MultiPatternScan scan = scan("^HOST=(.*)");
+
+		long received = new NodeFileScanner(runner, node).scan("app.env", patterns("^HOST=(.*)"), scan, false);
+
+		assertEquals("a", scan.scans().get(0).values().get("host"));
+		assertEquals(1, sent.size());
+		assertEquals(7, received);
+	}
+
+	@Test
+	public void scanFromEndVisitsLastLineFirst() throws IOException {
+		NodeCommandRunner runner = lines("HOST=a", "HOST=b", "HOST=c");
+		MultiPatternScan scan = scan("^HOST=(.*)");
+
+		new NodeFileScanner(runner, node).scan("app.env", patterns("^HOST=(.*)"), scan, true);
+
+		assertEquals("c", scan.scans().get(0).values().get("host"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void scanFromEndNeedsLiteral() throws IOException {
+		NodeCommandRunner runner = lines("HOST=a");
+		new NodeFileScanner(runner, node).scan("app.env", patterns("^(\\w+)=(.*)"), scan("^(\\w+)=(.*)"), true);
+	}
+
+	@Test
+	public void noMatchingLineIsNotAnError() throws IOException {
+		NodeCommandRunner runner = (target, command, output) -> NodeFileScanner.GREP_NO_MATCH;
+		MultiPatternScan scan = scan("^HOST=(.*)");
+
+		assertEquals(0, new NodeFileScanner(runner, node).scan("app.env", patterns("^HOST=(.*)"), scan, false));
+		assertEquals(Collections.emptyMap(), scan.scans().get(0).values());
+	}
+
+	@Test(expected = IOException.class)
+	public void failedCommandIsAnError() throws IOException {
+		NodeCommandRunner runner = (target, command, output) -> 2;
+		new NodeFileScanner(runner, node).scan("app.env", patterns("^HOST=(.*)"), scan("^HOST=(.*)"), false);
+	}
+
+	private static NodeCommandRunner lines(String... lines) {
+		return (target, command, output) -> {
+			for (String line : lines) {
+				if (output.visit(line)) {
+					break;
+				}
+			}
+			return 0;
+		};
+	}
+
+	private static List<Pattern> patterns(String regex) {
+		return Collections.singletonList(Pattern.compile(regex));
+	}
+
+	private static MultiPatternScan scan(String regex) {
+		return new MultiPatternScan(Collections.singletonList(new PatternScan(Pattern.compile(regex), "host")));
+	}
+}
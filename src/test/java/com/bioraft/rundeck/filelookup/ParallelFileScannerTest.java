@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for ParallelFileScanner.
+ */
+public class ParallelFileScannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void twoCaptureGroupsKeepFirstValueOfEachKey() throws IOException {
+		File file = generate(5000);
+		Pattern pattern = Pattern.compile("^(key\\d)=(\\d+)$");
+
+		PatternScan parallel = new PatternScan(pattern, "data");
+		new ParallelFileScanner(4, 1024).scan(file.toPath(), parallel);
+
+		assertEquals(sequential(file, pattern).values(), parallel.values());
+		// Keys come out in the order of their first appearance in the file.
+		assertEquals("[key0, key7, key4, key1, key8, key5, key2, key9, key6, key3]",
+				parallel.values().keySet().toString());
+		assertEquals("0", parallel.values().get("key0"));
+		assertFalse(parallel.isComplete());
+	}
+
+	@Test
+	public void singleCaptureGroupReturnsFirstMatchInFileOrder() throws IOException {
+		File file = generate(5000);
+		for (String regex : new String[] { "^key7=(4\\d\\d\\d)$", "^key3=(\\d*3)$", "marker=(.*)" }) {
+			Pattern pattern = Pattern.compile(regex);
+			PatternScan parallel = new PatternScan(pattern, "data");
+			new ParallelFileScanner(4, 512).scan(file.toPath(), parallel);
+			assertEquals(regex, sequential(file, pattern).values(), parallel.values());
+		}
+	}
+
+	@Test
+	public void findsNothingWithoutMatch() throws IOException {
+		File file = generate(100);
+		PatternScan parallel = new PatternScan(Pattern.compile("absent=(.*)"), "data");
+		new ParallelFileScanner(3, 64).scan(file.toPath(), parallel);
+		assertTrue(parallel.values().isEmpty());
+	}
+
+	@Test
+	public void nextLineStartMovesPastLineBreak() throws IOException {
+		File file = folder.newFile();
+		try (PrintWriter writer = new PrintWriter(file)) {
+			writer.print("abc\ndef\r\nghi");
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			assertEquals(0, ParallelFileScanner.nextLineStart(channel, 0, size));
+			assertEquals(4, ParallelFileScanner.nextLineStart(channel, 1, size));
+			assertEquals(4, ParallelFileScanner.nextLineStart(channel, 4, size));
+			assertEquals(9, ParallelFileScanner.nextLineStart(channel, 5, size));
+			assertEquals(size, ParallelFileScanner.nextLineStart(channel, 10, size));
+		}
+	}
+
+	@Test
+	public void nextLineStartMovesPastLoneCarriageReturn() throws IOException {
+		File file = folder.newFile();
+		try (PrintWriter writer = new PrintWriter(file)) {
+			writer.print("abc\rdef\r\nghi\r");
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			assertEquals(4, ParallelFileScanner.nextLineStart(channel, 1, size));
+			assertEquals(9, ParallelFileScanner.nextLineStart(channel, 5, size));
+			// Past the "\n" of a "\r\n" split between the chunks.
+			assertEquals(9, ParallelFileScanner.nextLineStart(channel, 8, size));
+			assertEquals(size, ParallelFileScanner.nextLineStart(channel, 10, size));
+		}
+	}
+
+	@Test
+	public void carriageReturnLinesMatchSequentialScan() throws IOException {
+		File file = generate(5000, "\r");
+		Pattern pattern = Pattern.compile("^(key\\d)=(\\d+)$");
+
+		PatternScan parallel = new PatternScan(pattern, "data");
+		new ParallelFileScanner(4, 1000).scan(file.toPath(), parallel);
+
+		assertEquals(sequential(file, pattern).values(), parallel.values());
+		assertEquals(sequential(file, pattern).matches(), parallel.matches());
+	}
+
+	private PatternScan sequential(File file, Pattern pattern) throws IOException {
+		PatternScan scan = new PatternScan(pattern, "data");
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			while ((line = reader.readLine()) != null && !scan.visit(line)) {
+				// Keep reading.
+			}
+		}
+		return scan;
+	}
+
+	private File generate(int lines) throws IOException {
+		return generate(lines, "\n");
+	}
+
+	private File generate(int lines, String lineBreak) throws IOException {
+		File file = folder.newFile();
+		try (PrintWriter writer = new PrintWriter(file)) {
+			for (int i = 0; i < lines; i++) {
+				writer.print("key" + (i * 7 % 10) + "=" + i + lineBreak);
+				if (i == 3500) {
+					writer.print("marker=late" + lineBreak);
+				}
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for PatternCache.
+ */
+public class PatternCacheTest {
+
+	@Test
+	public void reusesCompiledPattern() {
+		PatternCache cache = new PatternCache(4);
+		Pattern first = cache.compile("^DB_HOST=(.*)");
+		Pattern second = cache.compile("^DB_HOST=(.*)");
+
+		assertSame(first, second);
+		assertEquals(1, cache.hits());
+		assertEquals(1, cache.misses());
+	}
+
+	@Test
+	public void flagsArePartOfTheKey() {
+		PatternCache cache = new PatternCache(4);
+		Pattern plain = cache.compile("key=(.*)");
+		Pattern insensitive = cache.compile("key=(.*)", Pattern.CASE_INSENSITIVE);
+
+		assertNotSame(plain, insensitive);
+		assertEquals(Pattern.CASE_INSENSITIVE, insensitive.flags());
+		assertEquals(2, cache.misses());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		PatternCache cache = new PatternCache(2);
+		Pattern a = cache.compile("a");
+		cache.compile("b");
+		cache.compile("a");
+		cache.compile("c");
+
+		assertEquals(2, cache.size());
+		assertEquals(3, cache.misses());
+		// "b" was the eldest entry when "c" was added.
+		assertSame(a, cache.compile("a"));
+		cache.compile("b");
+		assertEquals(2, cache.hits());
+		assertEquals(4, cache.misses());
+	}
+
+	@Test
+	public void invalidPatternIsNotCached() {
+		PatternCache cache = new PatternCache(2);
+		try {
+			cache.compile("(unclosed");
+			fail("Expected PatternSyntaxException");
+		} catch (PatternSyntaxException e) {
+			assertEquals(0, cache.size());
+		}
+	}
+}
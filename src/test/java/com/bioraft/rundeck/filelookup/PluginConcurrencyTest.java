@@ -0,0 +1,192 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.common.INodeEntry;
+import com.dtolabs.rundeck.core.execution.workflow.SharedOutputContext;
+import com.dtolabs.rundeck.plugins.PluginLogger;
+import com.dtolabs.rundeck.plugins.step.PluginStepContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs one plugin instance on many nodes at once, as Rundeck does for a node
+ * step, and checks that no run sees another run's options or results.
+ */
+public class PluginConcurrencyTest {
+
+	private static final int THREADS = 64;
+
+	private static final int RUNS = 256;
+
+	private static final int FILES = 8;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void scanRunsDoNotShareState() throws Exception {
+		List<File> files = new ArrayList<>();
+		for (int i = 0; i < FILES; i++) {
+			files.add(write("app" + i + ".env", "HOST=node" + i + "\nVERSION=1." + i + "\n"));
+		}
+		ScanFileNodeStepPlugin plugin = new ScanFileNodeStepPlugin();
+		List<Run> runs = new ArrayList<>();
+		for (int i = 0; i < RUNS; i++) {
+			Map<String, Object> configuration = new HashMap<>();
+			configuration.put("path", files.get(i % FILES).getPath());
+			configuration.put("group", "group" + i);
+			configuration.put("name", "name" + i);
+			configuration.put("regex", i % 2 == 0 ? "^HOST=(.*)" : "^VERSION=(.*)");
+			runs.add(new Run(configuration, i % 2 == 0 ? "node" + (i % FILES) : "1." + (i % FILES)));
+		}
+
+		runAll(runs, run -> plugin.executeNodeStep(run.context, run.configuration, run.node));
+
+		for (int i = 0; i < RUNS; i++) {
+			Run run = runs.get(i);
+			verify(run.output).addOutput("group" + i, "name" + i, run.expected);
+			verify(run.output, times(1)).addOutput(anyString(), anyString(), anyString());
+		}
+	}
+
+	@Test
+	public void identicalScansShareResultsButNotOutputs() throws Exception {
+		File file = write("app.env", "HOST=db.example.com\nVERSION=1.2\n");
+		ScanFileNodeStepPlugin plugin = new ScanFileNodeStepPlugin();
+		List<Run> runs = new ArrayList<>();
+		for (int i = 0; i < RUNS; i++) {
+			Map<String, Object> configuration = new HashMap<>();
+			configuration.put("path", file.getPath());
+			configuration.put("group", "node" + i);
+			configuration.put("name", "host");
+			configuration.put("regex", "^HOST=(.*)");
+			runs.add(new Run(configuration, "db.example.com"));
+		}
+
+		runAll(runs, run -> plugin.executeNodeStep(run.context, run.configuration, run.node));
+
+		for (int i = 0; i < RUNS; i++) {
+			Run run = runs.get(i);
+			verify(run.output).addOutput("node" + i, "host", run.expected);
+			verify(run.output, times(1)).addOutput(anyString(), anyString(), anyString());
+		}
+	}
+
+	@Test
+	public void jsonRunsDoNotShareState() throws Exception {
+		List<File> files = new ArrayList<>();
+		for (int i = 0; i < FILES; i++) {
+			files.add(write("service" + i + ".json",
+					"{\"id\": \"" + i + "\", \"launchConfig\": {\"imageUuid\": \"docker:app" + i + "\"}}"));
+		}
+		JsonFindValueNodeStepPlugin plugin = new JsonFindValueNodeStepPlugin();
+		List<Run> runs = new ArrayList<>();
+		for (int i = 0; i < RUNS; i++) {
+			Map<String, Object> configuration = new HashMap<>();
+			configuration.put("path", files.get(i % FILES).getPath());
+			configuration.put("group", "group" + i);
+			configuration.put("name", "name" + i);
+			configuration.put("fieldName", i % 2 == 0 ? "id" : "imageUuid");
+			runs.add(new Run(configuration, i % 2 == 0 ? String.valueOf(i % FILES) : "docker:app" + (i % FILES)));
+		}
+
+		runAll(runs, run -> plugin.executeNodeStep(run.context, run.configuration, run.node));
+
+		for (int i = 0; i < RUNS; i++) {
+			Run run = runs.get(i);
+			verify(run.output).addOutput("group" + i, "name" + i, run.expected);
+			verify(run.output, times(1)).addOutput(anyString(), anyString(), anyString());
+		}
+	}
+
+	/**
+	 * Starts every run at once on a pool smaller than the number of runs and
+	 * rethrows the first failure.
+	 */
+	private void runAll(List<Run> runs, Step step) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+			for (Run run : runs) {
+				Callable<Void> task = () -> {
+					start.await();
+					step.execute(run);
+					return null;
+				};
+				futures.add(executor.submit(task));
+			}
+			start.countDown();
+			for (Future<Void> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private File write(String name, String content) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private interface Step {
+		void execute(Run run) throws Exception;
+	}
+
+	/**
+	 * The mocks of one node's run, created up front so that only the plugin
+	 * runs concurrently.
+	 */
+	private static final class Run {
+		final Map<String, Object> configuration;
+		final String expected;
+		final PluginStepContext context = mock(PluginStepContext.class);
+		final SharedOutputContext output = mock(SharedOutputContext.class);
+		final INodeEntry node = mock(INodeEntry.class);
+
+		Run(Map<String, Object> configuration, String expected) {
+			this.configuration = configuration;
+			this.expected = expected;
+			when(context.getLogger()).thenReturn(mock(PluginLogger.class));
+			when(context.getOutputContext()).thenReturn(output);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for ReverseFileScanner.
+ */
+public class ReverseFileScannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void returnsLinesOfReaderInReverse() throws IOException {
+		String[] contents = { "", "\n", "a", "a\n", "a\nb", "a\r\nb\r\n", "a\rb\r", "\n\nx\n\n", "one\r\n\r\ntwo\rthree\n",
+				"long line without break at all" };
+		for (String content : contents) {
+			File file = write(content);
+			List<String> expected = readerLines(content);
+			Collections.reverse(expected);
+			for (int blockSize = 1; blockSize < 9; blockSize++) {
+				assertEquals(content.replace("\r", "\\r").replace("\n", "\\n") + " block " + blockSize, expected,
+						reverseLines(file, blockSize));
+			}
+		}
+	}
+
+	@Test
+	public void decodesUtf8Lines() throws IOException {
+		File file = write("caf\u00e9=1\n\u00fcber=2\n");
+		List<String> lines = reverseLines(file, 3, new LineDecoder(StandardCharsets.UTF_8));
+		assertEquals("\u00fcber=2", lines.get(0));
+		assertEquals("caf\u00e9=1", lines.get(1));
+	}
+
+	@Test
+	public void decodesLinesBeforeMatching() throws IOException {
+		// The UTF-8 encoding of \u00c5 ends in 0x85, a line terminator if read as one char per byte.
+		File file = write("DB_HOST=\u00c5land\n");
+		PatternScan scan = new PatternScan(Pattern.compile("^DB_HOST=(.*)"), "host");
+		new ReverseFileScanner(4, new LineDecoder(StandardCharsets.UTF_8)).scan(file.toPath(), scan);
+		assertEquals("\u00c5land", scan.values().get("host"));
+	}
+
+	@Test
+	public void stopsAtLastMatch() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			content.append("version=").append(i).append('\n').append("noise ").append(i).append('\n');
+		}
+		File file = write(content.toString());
+		PatternScan scan = new PatternScan(Pattern.compile("^version=(\\d+)"), "version");
+		int[] visited = { 0 };
+		new ReverseFileScanner(64).scan(file.toPath(), line -> {
+			visited[0]++;
+			return scan.visit(line);
+		});
+
+		assertEquals("999", scan.values().get("version"));
+		assertEquals(2, visited[0]);
+	}
+
+	@Test
+	public void twoCaptureGroupsKeepLastValueOfEachKey() throws IOException {
+		File file = write("a=1\nb=2\na=3\n");
+		PatternScan scan = new PatternScan(Pattern.compile("^(\\w)=(\\d)"), "data");
+		new ReverseFileScanner(4).scan(file.toPath(), scan);
+		assertEquals("3", scan.values().get("a"));
+		assertEquals("2", scan.values().get("b"));
+	}
+
+	private List<String> reverseLines(File file, int blockSize) throws IOException {
+		return reverseLines(file, blockSize, LineDecoder.platform());
+	}
+
+	private List<String> reverseLines(File file, int blockSize, LineDecoder decoder) throws IOException {
+		List<String> lines = new ArrayList<>();
+		new ReverseFileScanner(blockSize, decoder).scan(file.toPath(), line -> {
+			lines.add(line.toString());
+			return false;
+		});
+		return lines;
+	}
+
+	private List<String> readerLines(String content) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	private File write(String content) throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
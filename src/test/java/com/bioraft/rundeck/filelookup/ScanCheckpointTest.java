@@ -0,0 +1,254 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import com.dtolabs.rundeck.core.execution.workflow.SharedOutputContext;
+import com.dtolabs.rundeck.plugins.PluginLogger;
+import com.dtolabs.rundeck.plugins.step.PluginStepContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for incremental scans through ScanCheckpoint.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ScanCheckpointTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Mock
+	PluginStepContext context;
+
+	@Mock
+	PluginLogger logger;
+
+	@Mock
+	SharedOutputContext sharedOutputContext;
+
+	private Path stateDirectory;
+
+	private File log;
+
+	@Before
+	public void setUp() throws IOException {
+		stateDirectory = folder.newFolder("state").toPath();
+		log = folder.newFile("app.log");
+		when(context.getLogger()).thenReturn(logger);
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+	}
+
+	@Test
+	public void resumesFromOffsetAndCarriesValuesForward() throws IOException {
+		write("a=1\nb=2\n");
+		scan("^(\\w)=(\\d)");
+		verify(sharedOutputContext).addOutput("data", "a", "1");
+
+		// Rewrite the old bytes and append: only the appended line is read.
+		write("a=7\nb=8\nc=3\n");
+		scan("^(\\w)=(\\d)");
+		verify(sharedOutputContext, times(2)).addOutput("data", "a", "1");
+		verify(sharedOutputContext, times(2)).addOutput("data", "b", "2");
+		verify(sharedOutputContext).addOutput("data", "c", "3");
+		verify(sharedOutputContext, never()).addOutput("data", "a", "7");
+	}
+
+	@Test
+	public void resumesWithEachForwardEngine() throws IOException {
+		for (LookupEngine engine : new LookupEngine[] { LookupEngine.READER, LookupEngine.MAPPED,
+				LookupEngine.PARALLEL }) {
+			stateDirectory = folder.newFolder(engine.name()).toPath();
+			write("a=1\r\nb=2\n");
+			FileLookupUtils first = utils();
+			first.setEngine(engine);
+			first.scanPropertiesFile(log.getPath(), "data", "key", "^(\\w)=(\\d)", false);
+
+			write("a=7\r\nb=8\nc=3\nd=4\n");
+			FileLookupUtils second = utils();
+			second.setEngine(engine);
+			second.scanPropertiesFile(log.getPath(), "data", "key", "^(\\w)=(\\d)", false);
+			verify(sharedOutputContext, times(2)).addOutput("data", "a", "1");
+			verify(sharedOutputContext).addOutput("data", "d", "4");
+			verify(sharedOutputContext, never()).addOutput("data", "a", "7");
+			clearInvocations(sharedOutputContext);
+		}
+	}
+
+	@Test
+	public void skipsReadingOnceSingleCaptureMatched() throws IOException {
+		write("version=1\n");
+		scan("^version=(\\d)");
+		append("version=2\n");
+		scan("^version=(\\d)");
+		verify(sharedOutputContext, times(2)).addOutput("data", "key", "1");
+	}
+
+	@Test
+	public void leavesUnterminatedLineForNextRun() throws IOException {
+		write("a=1\nb=");
+		scan("^(\\w)=(\\d)");
+		append("2\n");
+		scan("^(\\w)=(\\d)");
+		verify(sharedOutputContext, times(1)).addOutput("data", "b", "2");
+	}
+
+	@Test
+	public void rescansTruncatedFile() throws IOException {
+		write("a=1\nb=2\n");
+		scan("^(\\w)=(\\d)");
+		write("a=5\n");
+		scan("^(\\w)=(\\d)");
+		verify(sharedOutputContext).addOutput("data", "a", "5");
+	}
+
+	@Test
+	public void rescansRotatedFile() throws IOException {
+		write("a=1\n");
+		scan("^(\\w)=(\\d)");
+
+		File rotated = new File(log.getParentFile(), "app.log.1");
+		assertTrue(log.renameTo(rotated));
+		// Larger than before, so only the new file key reveals the rotation.
+		write("a=6\nb=7\n");
+		scan("^(\\w)=(\\d)");
+		verify(sharedOutputContext).addOutput("data", "a", "6");
+	}
+
+	@Test
+	public void scanFromEndLetsNewLinesWin() throws IOException {
+		write("v=1\nv=2\n");
+		FileLookupUtils utils = utils();
+		utils.setFromEnd(true);
+		utils.scanPropertiesFile(log.getPath(), "data", "key", "^v=(\\d)", false);
+		append("other\nv=3\nnoise\n");
+		utils.scanPropertiesFile(log.getPath(), "data", "key", "^v=(\\d)", false);
+		append("noise\n");
+		utils.scanPropertiesFile(log.getPath(), "data", "key", "^v=(\\d)", false);
+		verify(sharedOutputContext).addOutput("data", "key", "2");
+		verify(sharedOutputContext, times(2)).addOutput("data", "key", "3");
+	}
+
+	@Test
+	public void keepsSeparateStateForEachLookup() throws IOException {
+		write("a=1\n");
+		List<ScanTarget> first = Collections.singletonList(new ScanTarget("data", "key", "^a=(\\d)"));
+		List<ScanTarget> second = Collections.singletonList(new ScanTarget("data", "key", "^b=(\\d)"));
+		assertNotEquals(ScanCheckpoint.stateFile(stateDirectory, log.toPath(), first, false),
+				ScanCheckpoint.stateFile(stateDirectory, log.toPath(), second, false));
+		assertNotEquals(ScanCheckpoint.stateFile(stateDirectory, log.toPath(), first, false),
+				ScanCheckpoint.stateFile(stateDirectory, log.toPath(), first, true));
+	}
+
+	@Test
+	public void restoresStoredValues() throws IOException {
+		write("k=1\n");
+		MultiPatternScan scan = new MultiPatternScan(Collections.singletonList(
+				new PatternScan(Pattern.compile("x"), "data")));
+		scan.scans().get(0).restore(Collections.singletonMap("key = with: specials", "v\u00e9\nline"), true);
+		Path state = stateDirectory.resolve("test.properties");
+		ScanCheckpoint.store(state, Files.readAttributes(log.toPath(), BasicFileAttributes.class),
+				4, scan);
+
+		ScanCheckpoint checkpoint = ScanCheckpoint.load(state);
+		MultiPatternScan restored = scan.copy();
+		checkpoint.restore(restored);
+		assertEquals(4, checkpoint.offset());
+		assertEquals(scan.scans().get(0).values(), restored.scans().get(0).values());
+		assertTrue(restored.isComplete());
+	}
+
+	@Test
+	public void storesUnsetOptionalGroups() throws IOException {
+		write("port=\n");
+		MultiPatternScan scan = new MultiPatternScan(Collections.singletonList(
+				new PatternScan(Pattern.compile("^(\\w+)=(\\d+)?"), "data")));
+		scan.visit("port=");
+		Path state = stateDirectory.resolve("test.properties");
+		ScanCheckpoint.store(state, Files.readAttributes(log.toPath(), BasicFileAttributes.class), 6, scan);
+
+		MultiPatternScan restored = scan.copy();
+		ScanCheckpoint.load(state).restore(restored);
+		assertEquals(Collections.singletonMap("port", null), restored.scans().get(0).values());
+	}
+
+	@Test
+	public void storesUnsetOptionalNames() throws IOException {
+		write("=1\n");
+		MultiPatternScan scan = new MultiPatternScan(Collections.singletonList(
+				new PatternScan(Pattern.compile("^(?:(\\w+)=)?(.*)"), "data")));
+		scan.visit("plain");
+		Path state = stateDirectory.resolve("test.properties");
+		ScanCheckpoint.store(state, Files.readAttributes(log.toPath(), BasicFileAttributes.class), 3, scan);
+
+		MultiPatternScan restored = scan.copy();
+		ScanCheckpoint.load(state).restore(restored);
+		assertEquals(Collections.singletonMap(null, "plain"), restored.scans().get(0).values());
+	}
+
+	@Test
+	public void keepsStateReadableByOwnerOnly() throws IOException {
+		assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		write("k=1\n");
+		Path state = stateDirectory.resolve("new").resolve("test.properties");
+		ScanCheckpoint.store(state, Files.readAttributes(log.toPath(), BasicFileAttributes.class), 4,
+				new MultiPatternScan(Collections.singletonList(new PatternScan(Pattern.compile("x"), "data"))));
+
+		assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(state.getParent()));
+		assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(state));
+	}
+
+	private void scan(String regex) throws IOException {
+		utils().scanPropertiesFile(log.getPath(), "data", "key", regex, false);
+	}
+
+	private FileLookupUtils utils() {
+		FileLookupUtils utils = new FileLookupUtils(context);
+		utils.setCheckpointDirectory(stateDirectory);
+		return utils;
+	}
+
+	private void write(String content) throws IOException {
+		Files.write(log.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void append(String content) throws IOException {
+		Files.write(log.toPath(), content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+	}
+}
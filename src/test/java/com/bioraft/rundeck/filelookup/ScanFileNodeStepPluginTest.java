@@ -135,6 +135,41 @@ public class ScanFileNodeStepPluginTest {
 		assertEquals("another", found.get("label2"));
 	}
 
+	@Test
+	public void canScanOnNode() throws StepException {
+		configuration.put("regex", "com[.]example[.]label2: (.*)");
+		configuration.put("scanOnNode", "true");
+		plugin.nodeRunner = new LocalCommandRunner();
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		this.plugin.executeNodeStep(context, configuration, entry);
+
+		verify(sharedOutputContext).addOutput("example", "key", "another");
+	}
+
+	@Test(expected = StepException.class)
+	public void scanOnNodeFailsForMissingFile() throws StepException {
+		configuration.put("path", "no_such_file");
+		configuration.put("scanOnNode", "true");
+		plugin.nodeRunner = new LocalCommandRunner();
+		this.plugin.executeNodeStep(context, configuration, entry);
+	}
+
+	@Test(expected = StepException.class)
+	public void scanOnNodeCannotBeIncremental() throws StepException {
+		configuration.put("scanOnNode", "true");
+		configuration.put("incremental", "true");
+		this.plugin.executeNodeStep(context, configuration, entry);
+	}
+
+	@Test(expected = StepException.class)
+	public void scanOnNodeFromEndNeedsLiteral() throws StepException {
+		configuration.put("regex", "^(\\w+)\\s(.*)");
+		configuration.put("scanOnNode", "true");
+		configuration.put("fromEnd", "true");
+		plugin.nodeRunner = new LocalCommandRunner();
+		this.plugin.executeNodeStep(context, configuration, entry);
+	}
+
 	private Map<String, String> mergeLists(List<String> keys, List<String> values) {
 		if (keys.size() != values.size()) {
 			throw new IllegalArgumentException("Cannot combine lists with dissimilar sizes");
@@ -15,6 +15,7 @@
  */
 package com.bioraft.rundeck.filelookup;
 
+import com.dtolabs.rundeck.core.Constants;
 import com.dtolabs.rundeck.core.execution.workflow.SharedOutputContext;
 import com.dtolabs.rundeck.core.execution.workflow.steps.StepException;
 import com.dtolabs.rundeck.plugins.PluginLogger;
@@ -37,6 +38,7 @@ import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.matches;
 import static org.mockito.Mockito.*;
@@ -110,6 +112,35 @@ public class ScanFileStepPluginTest {
 		assertEquals("another", found.get("key"));
 	}
 
+	@Test
+	public void canFindLastMatchFromEnd() throws StepException {
+		configuration.put("regex", "com[.]example[.]label2: (.*)");
+		configuration.put("fromEnd", "true");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+
+		this.plugin.executeStep(context, configuration);
+		verify(sharedOutputContext).addOutput("example", "key", "notAnother");
+	}
+
+	@Test
+	public void canFindSeveralPatternsInOnePass() throws StepException {
+		configuration.put("regex", "com[.]example[.]label2: (.*)");
+		configuration.put("patterns", "first=com[.]example[.]label1: (.*)\nimages.web=image: (image:.*)");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+
+		this.plugin.executeStep(context, configuration);
+		verify(sharedOutputContext).addOutput("example", "key", "another");
+		verify(sharedOutputContext).addOutput("example", "first", "firstValue");
+		verify(sharedOutputContext).addOutput("images", "web", "image:latest");
+		verify(sharedOutputContext, times(3)).addOutput(anyString(), anyString(), anyString());
+	}
+
+	@Test(expected = StepException.class)
+	public void noPatternThrowsException() throws StepException {
+		configuration.remove("regex");
+		this.plugin.executeStep(context, configuration);
+	}
+
 	@Test
 	public void canFindMultipleCapture() throws StepException {
 		configuration.put("regex", "^\\s+com[.]example[.](label1|label2): (.*)");
@@ -129,6 +160,45 @@ public class ScanFileStepPluginTest {
 		assertEquals("another", found.get("label2"));
 	}
 
+	@Test
+	public void writesMetricsWhenRequested() throws StepException {
+		configuration.put("regex", "com[.]example[.]label2: (.*)");
+		configuration.put("metricsOutput", "true");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+
+		this.plugin.executeStep(context, configuration);
+		verify(sharedOutputContext).addOutput("example", "key", "another");
+		verify(sharedOutputContext).addOutput("example", "__metrics.files", "1");
+		verify(sharedOutputContext).addOutput("example", "__metrics.matches", "1");
+	}
+
+	@Test
+	public void failsWhenOutOfLines() {
+		configuration.put("regex", "com[.]example[.]label2: (.*)");
+		configuration.put("maxLines", "5");
+
+		try {
+			this.plugin.executeStep(context, configuration);
+			fail("Expected the lookup to run out of lines");
+		} catch (StepException e) {
+			assertEquals(FileLookupFailureReason.BUDGET_EXCEEDED, e.getFailureReason());
+			assertTrue(e.getMessage(), e.getMessage().endsWith("Max Lines (5) reached"));
+		}
+		verify(context, never()).getOutputContext();
+	}
+
+	@Test
+	public void keepsPartialResultsWhenAsked() throws StepException {
+		configuration.put("regex", "^\\s+(com[.]example[.]label\\d): (.*)");
+		configuration.put("maxLines", "12");
+		configuration.put("keepPartialResults", "true");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+
+		this.plugin.executeStep(context, configuration);
+		verify(sharedOutputContext).addOutput("example", "com.example.label2", "another");
+		verify(logger).log(eq(Constants.WARN_LEVEL), contains("Max Lines (12) reached"));
+	}
+
 	private Map<String, String> mergeLists(List<String> keys, List<String> values) {
 		if (keys.size() != values.size()) {
 			throw new IllegalArgumentException("Cannot combine lists with dissimilar sizes");
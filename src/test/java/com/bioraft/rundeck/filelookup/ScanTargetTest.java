@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for ScanTarget.
+ */
+public class ScanTargetTest {
+
+	@Test
+	public void parsesPatternLines() {
+		List<ScanTarget> targets = ScanTarget.parse("data", "key", "^VERSION=(.*)",
+				"host=^DB_HOST=(.*)\r\n\n  db.port=^DB_PORT=(\\d+)\n");
+
+		assertEquals(3, targets.size());
+		assertTarget("data", "key", "^VERSION=(.*)", targets.get(0));
+		assertTarget("data", "host", "^DB_HOST=(.*)", targets.get(1));
+		assertTarget("db", "port", "^DB_PORT=(\\d+)", targets.get(2));
+	}
+
+	@Test
+	public void blankSettingsGiveNoTargets() {
+		assertTrue(ScanTarget.parse("data", "key", "", " \n").isEmpty());
+		assertTrue(ScanTarget.parse("data", "key", null, null).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsLineWithoutName() {
+		ScanTarget.parse("data", "key", "", "=(.*)");
+	}
+
+	private void assertTarget(String group, String name, String regex, ScanTarget target) {
+		assertEquals(group, target.getGroup());
+		assertEquals(name, target.getName());
+		assertEquals(regex, target.getRegex());
+	}
+}
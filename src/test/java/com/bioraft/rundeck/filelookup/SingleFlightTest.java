@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for SingleFlight.
+ */
+public class SingleFlightTest {
+
+	private static final int WAITERS = 7;
+
+	private final SingleFlight flights = new SingleFlight();
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(WAITERS + 1);
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void concurrentCallsShareOneRun() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		Object result = new Object();
+		SingleFlight.Work<Object> work = () -> {
+			runs.incrementAndGet();
+			await(release);
+			return result;
+		};
+
+		List<Future<Object>> calls = startAll("key", work);
+		release.countDown();
+
+		for (Future<Object> call : calls) {
+			assertSame(result, call.get(10, TimeUnit.SECONDS));
+		}
+		assertEquals(1, runs.get());
+		assertEquals(0, flights.size());
+	}
+
+	@Test
+	public void differentKeysRunSeparately() throws IOException {
+		// Were the keys shared, the inner call would wait for the outer one forever.
+		assertEquals("inner+outer", flights.run("outer", () -> flights.run("inner", () -> "inner") + "+outer"));
+		assertEquals(0, flights.size());
+	}
+
+	@Test
+	public void laterCallsRunAgain() throws IOException {
+		AtomicInteger runs = new AtomicInteger();
+		flights.run("key", runs::incrementAndGet);
+		flights.run("key", runs::incrementAndGet);
+		assertEquals(2, runs.get());
+	}
+
+	@Test
+	public void failureIsShared() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		SingleFlight.Work<Object> work = () -> {
+			await(release);
+			throw new IOException("unreadable");
+		};
+
+		List<Future<Object>> calls = startAll("key", work);
+		release.countDown();
+
+		for (Future<Object> call : calls) {
+			try {
+				call.get(10, TimeUnit.SECONDS);
+				fail("Expected the failure to be shared");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IOException);
+				assertEquals("unreadable", e.getCause().getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void waiterTakesOverFromCancelledCall() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<String> first = executor.submit(() -> flights.run("key", () -> {
+			started.countDown();
+			await(release);
+			throw new InterruptedIOException("Scan cancelled");
+		}));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		Future<String> second = executor.submit(() -> flights.run("key", () -> "second"));
+		awaitWaiting("key", 1);
+		release.countDown();
+
+		assertEquals("second", second.get(10, TimeUnit.SECONDS));
+		try {
+			first.get(10, TimeUnit.SECONDS);
+			fail("Expected the cancelled call to fail");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof InterruptedIOException);
+		}
+	}
+
+	/**
+	 * Starts one call that runs the work and, once it is running, the calls
+	 * that wait for it.
+	 */
+	private <T> List<Future<T>> startAll(String key, SingleFlight.Work<T> work) throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		List<Future<T>> calls = new ArrayList<>();
+		calls.add(executor.submit(() -> flights.run(key, () -> {
+			started.countDown();
+			return work.run();
+		})));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < WAITERS; i++) {
+			calls.add(executor.submit(() -> flights.run(key, work)));
+		}
+		awaitWaiting(key, WAITERS);
+		return calls;
+	}
+
+	private void awaitWaiting(String key, int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (flights.waiting(key) < count) {
+			assertTrue("Callers did not join the running call", System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+	}
+
+	private static void await(CountDownLatch latch) throws IOException {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import org.junit.Test;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for YamlFieldFinder.
+ */
+public class YamlFieldFinderTest {
+
+	private static final String COMPOSE = "version: '3'\n"
+			+ "services:\n"
+			+ "  mysql:\n"
+			+ "    image: percona:5.7\n"
+			+ "    ports:\n"
+			+ "      - 127.0.0.1:3306:3306\n"
+			+ "    labels:\n"
+			+ "      com.example.label1: firstValue\n"
+			+ "  web:\n"
+			+ "    image: image:latest\n"
+			+ "    labels: {com.example.label1: secondValue, port: 80}\n"
+			+ "image: top\n";
+
+	@Test
+	public void returnsFirstScalarInDocumentOrder() {
+		assertEquals("percona:5.7", find(COMPOSE, "image"));
+		assertEquals("firstValue", find(COMPOSE, "com.example.label1"));
+		assertEquals("3", find(COMPOSE, "version"));
+		assertEquals("80", find(COMPOSE, "port"));
+	}
+
+	@Test
+	public void ignoresCollectionValuesAndSequenceElements() {
+		assertNull(find(COMPOSE, "ports"));
+		assertNull(find(COMPOSE, "services"));
+		assertNull(find("- image\n- key: [image]\n", "image"));
+		assertEquals("2", find("key: {key: [1, {other: 0}]}\nlist: [{key: 2}]\n", "key"));
+	}
+
+	@Test
+	public void keysAreNotValues() {
+		assertNull(find("a: key\nkey: {b: 1}\n", "key"));
+		assertEquals("c", find("? [complex, key]\n: key\nkey: c\n", "key"));
+	}
+
+	@Test
+	public void resolvesAliasesToScalars() {
+		assertEquals("shared", find("defaults: {name: &n shared}\nother: {value: *n}\n", "value"));
+	}
+
+	@Test
+	public void searchesLaterDocuments() {
+		assertEquals("second", find("---\na: 1\n---\nkey: second\n", "key"));
+	}
+
+	@Test
+	public void resolvesSeveralKeysInOnePass() {
+		Map<String, String> found = YamlFieldFinder.findAll(new StringReader(COMPOSE),
+				Arrays.asList("image", "com.example.label1", "missing"));
+		assertEquals("{image=percona:5.7, com.example.label1=firstValue}", found.toString());
+	}
+
+	@Test
+	public void stopsReadingAtLastMatch() {
+		// Everything after the match is malformed and must never be parsed.
+		assertEquals("found", find("key: found\nrest: [[[\n  - : {\n", "key"));
+	}
+
+	@Test(expected = YAMLException.class)
+	public void rejectsMalformedYaml() {
+		find("a: [1, 2\nkey: x\n", "key");
+	}
+
+	private String find(String yaml, String key) {
+		return YamlFieldFinder.findAll(new StringReader(yaml), Collections.singleton(key)).get(key);
+	}
+}
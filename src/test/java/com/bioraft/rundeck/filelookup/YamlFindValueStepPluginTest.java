@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 BioRAFT, Inc. (https://bioraft.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bioraft.rundeck.filelookup;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.dtolabs.rundeck.plugins.PluginLogger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.dtolabs.rundeck.core.execution.workflow.SharedOutputContext;
+import com.dtolabs.rundeck.core.execution.workflow.steps.StepException;
+import com.dtolabs.rundeck.plugins.step.PluginStepContext;
+
+/**
+ * Tests for YamlFindValueStepPlugin.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class YamlFindValueStepPluginTest {
+
+	YamlFindValueStepPlugin plugin;
+
+	@Mock
+	PluginStepContext context;
+
+	@Mock
+	PluginLogger logger;
+
+	@Mock
+	SharedOutputContext sharedOutputContext;
+
+	@Captor
+	ArgumentCaptor<String> nameCaptor;
+
+	@Captor
+	ArgumentCaptor<String> valueCaptor;
+
+	Map<String, Object> configuration;
+
+	@Before
+	public void setUp() {
+		this.plugin = new YamlFindValueStepPlugin();
+		configuration = Stream.of(new String[][] { { "path", "testData/test.yaml" }, { "group", "example" },
+				{ "name", "key" }, { "fieldName", "image" }, })
+				.collect(Collectors.toMap(data -> data[0], data -> data[1]));
+	}
+
+	@Test(expected = StepException.class)
+	public void noFileThrowsException() throws StepException {
+		configuration.put("path", "nosuchfile");
+		when(context.getLogger()).thenReturn(logger);
+		this.plugin.executeStep(context, configuration);
+	}
+
+	@Test(expected = StepException.class)
+	public void malformedFileThrowsException() throws StepException {
+		configuration.put("path", "testData/broken.yaml");
+		when(context.getLogger()).thenReturn(logger);
+		this.plugin.executeStep(context, configuration);
+	}
+
+	@Test
+	public void returnsFirstValue() throws StepException {
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		this.plugin.executeStep(context, configuration);
+		verify(sharedOutputContext).addOutput("example", "key", "percona:5.7");
+	}
+
+	@Test
+	public void returnsSeveralValues() throws StepException {
+		configuration.put("fields", "label=com.example.label2\nversion");
+		when(context.getOutputContext()).thenReturn(sharedOutputContext);
+		this.plugin.executeStep(context, configuration);
+		verify(sharedOutputContext, times(3)).addOutput(anyString(), nameCaptor.capture(), valueCaptor.capture());
+
+		assertEquals(Arrays.asList("key", "label", "version"), nameCaptor.getAllValues());
+		assertEquals(Arrays.asList("percona:5.7", "another", "3"), valueCaptor.getAllValues());
+	}
+
+	@Test
+	public void notCalledOnNoMatch() throws StepException {
+		configuration.put("fieldName", "no_such_key");
+		this.plugin.executeStep(context, configuration);
+		verify(context, never()).getOutputContext();
+	}
+}